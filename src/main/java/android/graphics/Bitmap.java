@@ -6,6 +6,12 @@ import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.utils.GdxRuntimeException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 
 /**
  * This class just connects libGDX images with android palette implementation.
@@ -15,10 +21,18 @@ import org.jetbrains.annotations.NotNull;
 public class Bitmap implements Disposable, AutoCloseable {
     private Pixmap pixmap;
     private final boolean ownsPixmap;
+    // If set, the pixmap was borrowed from this pool and is given back on dispose
+    private final PixmapPool pool;
+    private boolean returnedToPool;
 
     private Bitmap(Pixmap p, boolean ownsPixmap) {
+        this(p, ownsPixmap, null);
+    }
+
+    private Bitmap(Pixmap p, boolean ownsPixmap, PixmapPool pool) {
         this.pixmap = p;
         this.ownsPixmap = ownsPixmap;
+        this.pool = pool;
     }
 
     public static Bitmap of(Texture t) {
@@ -64,13 +78,20 @@ public class Bitmap implements Disposable, AutoCloseable {
 
     //region Disposable
     public boolean isDisposed() {
-        return pixmap.isDisposed();
+        return returnedToPool || pixmap.isDisposed();
     }
 
     @Override
     public void dispose() {
-        if (ownsPixmap && !isDisposed())
-            pixmap.dispose();
+        if (ownsPixmap && !isDisposed()) {
+            if (pool != null) {
+                returnedToPool = true;
+                pool.free(pixmap);
+            }
+            else {
+                pixmap.dispose();
+            }
+        }
     }
     //endregion Disposable
 
@@ -87,7 +108,7 @@ public class Bitmap implements Disposable, AutoCloseable {
      * @param height The number of rows to read
      */
     public void getPixels(int @NotNull [] pixels, int offset, int stride, int x, int y, int width, int height) {
-        if (pixmap.isDisposed())
+        if (isDisposed())
             throw new GdxRuntimeException("Can't call getPixels() on a recycled bitmap");
 
         if (width == 0 || height == 0) {
@@ -96,13 +117,139 @@ public class Bitmap implements Disposable, AutoCloseable {
 
         checkPixelsAccess(x, y, width, height, offset, stride, pixels);
 
-        // Read the pixels row by row
+        // Decode straight from the Pixmap's backing buffer whenever we know its layout
+        switch (pixmap.getFormat()) {
+            case RGBA8888:
+                readRgba8888(pixels, offset, stride, x, y, width, height);
+                break;
+            case RGB888:
+                readRgb888(pixels, offset, stride, x, y, width, height);
+                break;
+            case RGB565:
+            case RGBA4444:
+                readPacked16(pixels, offset, stride, x, y, width, height);
+                break;
+            case Alpha:
+            case Intensity:
+            case LuminanceAlpha:
+                readLuminanceAlpha(pixels, offset, stride, x, y, width, height);
+                break;
+            default:
+                readPixelByPixel(pixels, offset, stride, x, y, width, height);
+                break;
+        }
+    }
+
+    /**
+     * Returns a view of the pixmap's pixel data which doesn't share position or limit with it, so
+     * reading can't disturb anyone else who is using the buffer.
+     */
+    private ByteBuffer pixelData() {
+        final ByteBuffer data = pixmap.getPixels().duplicate();
+        data.clear();
+        return data;
+    }
+
+    private void readRgba8888(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+        // Bytes are stored as r, g, b, a so a big endian int view gives us RGBA straight away
+        final IntBuffer data = pixelData().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+        final int pixmapWidth = pixmap.getWidth();
+
+        for (int row = 0; row < height; row++) {
+            final int dstIndex = offset + row * stride;
+            data.position((y + row) * pixmapWidth + x);
+            data.get(pixels, dstIndex, width);
+            for (int i = dstIndex, end = dstIndex + width; i < end; i++) {
+                pixels[i] = ColorUtils.rgbaToArgb(pixels[i]);
+            }
+        }
+    }
+
+    private void readRgb888(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+        final ByteBuffer data = pixelData();
+        final int rowLength = pixmap.getWidth() * 3;
+        final byte[] scanline = new byte[width * 3];
+
+        for (int row = 0; row < height; row++) {
+            data.position((y + row) * rowLength + x * 3);
+            data.get(scanline, 0, scanline.length);
+            for (int col = 0, i = 0, dstIndex = offset + row * stride; col < width; col++, i += 3) {
+                pixels[dstIndex + col] = 0xFF000000
+                        | (scanline[i] & 0xFF) << 16
+                        | (scanline[i + 1] & 0xFF) << 8
+                        | (scanline[i + 2] & 0xFF);
+            }
+        }
+    }
+
+    private void readPacked16(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+        // 16-bit formats are written by gdx2d as native uint16_t values
+        final ShortBuffer data = pixelData().order(ByteOrder.nativeOrder()).asShortBuffer();
+        final int pixmapWidth = pixmap.getWidth();
+        final boolean rgb565 = pixmap.getFormat() == Pixmap.Format.RGB565;
+        final short[] scanline = new short[width];
+
+        for (int row = 0; row < height; row++) {
+            data.position((y + row) * pixmapWidth + x);
+            data.get(scanline, 0, width);
+            final int dstIndex = offset + row * stride;
+            if (rgb565) {
+                for (int col = 0; col < width; col++) {
+                    final int color = scanline[col];
+                    pixels[dstIndex + col] = 0xFF000000
+                            | EXPAND_5_BITS[(color >> 11) & 0x1F] << 16
+                            | EXPAND_6_BITS[(color >> 5) & 0x3F] << 8
+                            | EXPAND_5_BITS[color & 0x1F];
+                }
+            }
+            else {
+                for (int col = 0; col < width; col++) {
+                    final int color = scanline[col];
+                    pixels[dstIndex + col] = EXPAND_4_BITS[color & 0xF] << 24
+                            | EXPAND_4_BITS[(color >> 12) & 0xF] << 16
+                            | EXPAND_4_BITS[(color >> 8) & 0xF] << 8
+                            | EXPAND_4_BITS[(color >> 4) & 0xF];
+                }
+            }
+        }
+    }
+
+    private void readLuminanceAlpha(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+        // Alpha and Intensity are a single alpha byte over white, LuminanceAlpha is a grey byte
+        // followed by an alpha byte
+        final ByteBuffer data = pixelData();
+        final boolean hasLuminance = pixmap.getFormat() == Pixmap.Format.LuminanceAlpha;
+        final int bytesPerPixel = hasLuminance ? 2 : 1;
+        final int rowLength = pixmap.getWidth() * bytesPerPixel;
+        final byte[] scanline = new byte[width * bytesPerPixel];
+
+        for (int row = 0; row < height; row++) {
+            data.position((y + row) * rowLength + x * bytesPerPixel);
+            data.get(scanline, 0, scanline.length);
+            final int dstIndex = offset + row * stride;
+            if (hasLuminance) {
+                for (int col = 0, i = 0; col < width; col++, i += 2) {
+                    final int l = scanline[i] & 0xFF;
+                    pixels[dstIndex + col] = (scanline[i + 1] & 0xFF) << 24 | l << 16 | l << 8 | l;
+                }
+            }
+            else {
+                for (int col = 0; col < width; col++) {
+                    pixels[dstIndex + col] = (scanline[col] & 0xFF) << 24 | 0x00FFFFFF;
+                }
+            }
+        }
+    }
+
+    /**
+     * Slow path for formats we don't know the memory layout of.
+     */
+    private void readPixelByPixel(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
         for (int row = 0; row < height; row++) {
             int srcY = y + row;
             int dstIndex = offset + row * stride;
 
             for (int col = 0; col < width; col++) {
-                // todo: use pixmap.getPixels all pixels instead of getting pixel be pixel in the loop???
                 int srcX = x + col;
                 int pixel = ColorUtils.rgbaToArgb(pixmap.getPixel(srcX, srcY)); // convert from Pixmap's RGBA to android's ARGB
                 pixels[dstIndex + col] = pixel;
@@ -110,6 +257,23 @@ public class Bitmap implements Disposable, AutoCloseable {
         }
     }
 
+    /**
+     * Same lookup tables as gdx2d uses to widen 4, 5 and 6 bit channels to 8 bits, so the bulk
+     * decoders return exactly what {@link Pixmap#getPixel(int, int)} would.
+     */
+    private static final int[] EXPAND_4_BITS = expandTable(4);
+    private static final int[] EXPAND_5_BITS = expandTable(5);
+    private static final int[] EXPAND_6_BITS = expandTable(6);
+
+    private static int[] expandTable(int bits) {
+        final int max = (1 << bits) - 1;
+        final int[] table = new int[max + 1];
+        for (int i = 0; i <= max; i++) {
+            table[i] = (int) (i / (float) max * 255);
+        }
+        return table;
+    }
+
     /**
      * Shared code to check for illegal arguments passed to getPixels()
      * or setPixels()
@@ -164,13 +328,41 @@ public class Bitmap implements Disposable, AutoCloseable {
     }
 
     public static Bitmap createScaledBitmap(Bitmap bitmap, int newWidth, int newHeight, boolean bilinearFilter) {
-        Pixmap p = new Pixmap(newWidth, newHeight, bitmap.pixmap.getFormat());
+        return createScaledBitmap(bitmap, newWidth, newHeight, bilinearFilter, null);
+    }
+
+    /**
+     * Same as {@link #createScaledBitmap(Bitmap, int, int, boolean)}, but the scaled Pixmap is
+     * borrowed from {@code pool}, if not null, and given back to it when the returned bitmap is
+     * disposed.
+     */
+    public static Bitmap createScaledBitmap(Bitmap bitmap, int newWidth, int newHeight, boolean bilinearFilter,
+            @Nullable PixmapPool pool) {
+        return createScaledBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(),
+                                  newWidth, newHeight, bilinearFilter, pool);
+    }
+
+    /**
+     * Scales the rectangle of {@code bitmap} at ({@code x}, {@code y}) of size {@code width} x
+     * {@code height} into a new bitmap of {@code newWidth} x {@code newHeight}, without touching
+     * the rest of the source. The scaled Pixmap is borrowed from {@code pool}, if not null, and
+     * given back to it when the returned bitmap is disposed.
+     */
+    public static Bitmap createScaledBitmap(Bitmap bitmap, int x, int y, int width, int height,
+            int newWidth, int newHeight, boolean bilinearFilter, @Nullable PixmapPool pool) {
+        checkXYSign(x, y);
+        if (width <= 0 || height <= 0 || x + width > bitmap.getWidth() || y + height > bitmap.getHeight())
+            throw new IllegalArgumentException("The rectangle must be non-empty and inside the bitmap");
+
+        Pixmap p = pool != null
+                   ? pool.obtain(newWidth, newHeight, bitmap.pixmap.getFormat())
+                   : new Pixmap(newWidth, newHeight, bitmap.pixmap.getFormat());
         if (bilinearFilter) p.setFilter(Pixmap.Filter.BiLinear);
         p.drawPixmap(bitmap.pixmap,
-                     0, 0, bitmap.pixmap.getWidth(), bitmap.pixmap.getHeight(),
+                     x, y, width, height,
                      0, 0, newWidth, newHeight
         );
-        return new Bitmap(p, true);
+        return new Bitmap(p, true, pool);
     }
 
     @Override
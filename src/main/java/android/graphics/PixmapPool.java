@@ -0,0 +1,157 @@
+package android.graphics;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.Disposable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread safe pool of scratch {@link Pixmap}s, keyed by their dimensions and format, so
+ * generating many palettes doesn't allocate and free a native Pixmap for every scaled down
+ * bitmap. Idle Pixmaps are kept up to a total native byte budget; beyond it the least recently
+ * used sizes are disposed first.
+ * <p>
+ * Pass a pool to {@link Bitmap#createScaledBitmap(Bitmap, int, int, boolean, PixmapPool)}
+ * or {@link androidx.palette.graphics.Palette.Builder#setPixmapPool(PixmapPool)}. {@link #dispose()} frees all idle Pixmaps.
+ */
+public final class PixmapPool implements Disposable {
+    private final long mMaxBytes;
+    // Idle Pixmaps per key, in access order so the eldest key is the least recently used
+    private final LinkedHashMap<Key, ArrayDeque<Pixmap>> mIdle = new LinkedHashMap<>(16, 0.75f, true);
+    private long mIdleBytes;
+
+    /**
+     * @param maxBytes the maximum number of native bytes which idle Pixmaps may hold
+     */
+    public PixmapPool(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must be >= 0");
+        }
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns an idle Pixmap of the given size and format, or a new one if there is none. Either
+     * way it is fully transparent and has the default filter and blending of a new Pixmap.
+     * Give it back with {@link #free(Pixmap)} once done.
+     */
+    public @NotNull Pixmap obtain(int width, int height, Pixmap.@NotNull Format format) {
+        final Pixmap pixmap;
+        synchronized (this) {
+            final Key key = new Key(width, height, format);
+            final ArrayDeque<Pixmap> idle = mIdle.get(key);
+            pixmap = idle != null ? idle.pollLast() : null;
+            if (pixmap != null) {
+                mIdleBytes -= sizeOf(pixmap);
+                if (idle.isEmpty()) {
+                    mIdle.remove(key);
+                }
+            }
+        }
+        if (pixmap == null) {
+            return new Pixmap(width, height, format);
+        }
+
+        // Restore the state of a new Pixmap. fill() ignores blending, so this clears every pixel
+        pixmap.setColor(0);
+        pixmap.fill();
+        pixmap.setBlending(Pixmap.Blending.SourceOver);
+        pixmap.setFilter(Pixmap.Filter.BiLinear);
+        return pixmap;
+    }
+
+    /**
+     * Returns a Pixmap to the pool. It must not be used by the caller afterwards. If keeping it
+     * would exceed the byte budget, the least recently used idle Pixmaps are disposed, or this
+     * one if it is larger than the whole budget.
+     */
+    public void free(@NotNull Pixmap pixmap) {
+        if (pixmap.isDisposed()) {
+            return;
+        }
+        final long size = sizeOf(pixmap);
+        if (size > mMaxBytes) {
+            pixmap.dispose();
+            return;
+        }
+
+        synchronized (this) {
+            trimTo(mMaxBytes - size);
+            final Key key = new Key(pixmap.getWidth(), pixmap.getHeight(), pixmap.getFormat());
+            ArrayDeque<Pixmap> idle = mIdle.get(key);
+            if (idle == null) {
+                idle = new ArrayDeque<>();
+                mIdle.put(key, idle);
+            }
+            idle.addLast(pixmap);
+            mIdleBytes += size;
+        }
+    }
+
+    /**
+     * @return the number of native bytes held by idle Pixmaps
+     */
+    public synchronized long getIdleBytes() {
+        return mIdleBytes;
+    }
+
+    /**
+     * Disposes all idle Pixmaps. The pool can still be used afterwards.
+     */
+    @Override
+    public synchronized void dispose() {
+        trimTo(0);
+    }
+
+    private void trimTo(long maxBytes) {
+        final Iterator<Map.Entry<Key, ArrayDeque<Pixmap>>> entries = mIdle.entrySet().iterator();
+        while (mIdleBytes > maxBytes && entries.hasNext()) {
+            final ArrayDeque<Pixmap> idle = entries.next().getValue();
+            while (mIdleBytes > maxBytes && !idle.isEmpty()) {
+                final Pixmap pixmap = idle.pollFirst();
+                mIdleBytes -= sizeOf(pixmap);
+                pixmap.dispose();
+            }
+            if (idle.isEmpty()) {
+                entries.remove();
+            }
+        }
+    }
+
+    private static long sizeOf(Pixmap pixmap) {
+        return pixmap.getPixels().capacity();
+    }
+
+    private static final class Key {
+        final int width;
+        final int height;
+        final Pixmap.Format format;
+
+        Key(int width, int height, Pixmap.Format format) {
+            this.width = width;
+            this.height = height;
+            this.format = format;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return width == key.width && height == key.height && format == key.format;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * width + height) * 31 + format.hashCode();
+        }
+    }
+}
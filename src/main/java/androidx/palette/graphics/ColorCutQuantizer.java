@@ -21,10 +21,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Comparator;
 import java.util.List;
-import java.util.PriorityQueue;
 
 /**
  * An color quantizer based on the Median-cut algorithm, but optimized for picking out distinct
@@ -44,62 +41,129 @@ final class ColorCutQuantizer {
     static final int COMPONENT_GREEN = -2;
     static final int COMPONENT_BLUE = -1;
 
-    private static final int QUANTIZE_WORD_WIDTH = 5;
-    private static final int QUANTIZE_WORD_MASK = (1 << QUANTIZE_WORD_WIDTH) - 1;
+    static final int QUANTIZE_WORD_WIDTH = 5;
 
+    // Bits per component of the histogram's colors
+    final int mWordWidth;
+    private final int mWordMask;
+
+    // Distinct colors are held in the first mColorCount entries of mColors, with their
+    // populations at the same index of mPopulations
     final int[] mColors;
-    final int[] mHistogram;
+    final long[] mPopulations;
+    final int mColorCount;
     final List<Palette.Swatch> mQuantizedColors;
     final Palette.Filter @Nullable [] mFilters;
 
-    private final float[] mTempHsl = new float[3];
+    // The boxes of quantizePixels(), as parallel arrays indexed by box number. Bounds are in
+    // quantized color components, lower and upper are inclusive indices into mColors
+    private int[] mBoxLower;
+    private int[] mBoxUpper;
+    private long[] mBoxPopulation;
+    private int[] mBoxVolume;
+    private int[] mBoxMinRed, mBoxMaxRed;
+    private int[] mBoxMinGreen, mBoxMaxGreen;
+    private int[] mBoxMinBlue, mBoxMaxBlue;
+    private int mBoxCount;
+
+    // Binary heap of box numbers, with the largest volume first
+    private int[] mHeap;
+    private int mHeapSize;
+
+    // Population of each value of a color component, for findSplitPoint()
+    private final long[] mBinPopulations;
+
+    // Boxes with a smaller volume than this, in quantized units, are not split
+    private final double mMinSplitVolume;
 
     /**
      * Constructor.
      *
-     * @param pixels histogram representing an image's pixel data
+     * @param histogram histogram representing an image's pixel data. It is only read, so it can
+     *                  be quantized again later.
      * @param maxColors The maximum number of colors that should be in the result palette.
      * @param filters Set of filters to use in the quantization stage
      */
-    ColorCutQuantizer(int[] pixels, int maxColors, Palette.Filter @Nullable [] filters) {
-        mFilters = filters;
+    ColorCutQuantizer(ColorHistogram histogram, int maxColors, Palette.Filter @Nullable [] filters) {
+        this(histogram, maxColors, filters, null, null);
+    }
 
-        final int[] hist = mHistogram = new int[1 << (QUANTIZE_WORD_WIDTH * 3)];
-        for (int i = 0; i < pixels.length; i++) {
-            final int quantizedColor = quantizeFromRgb888(pixels[i]);
-            // Now update the pixel value to the quantized value
-            pixels[i] = quantizedColor;
-            // And update the histogram
-            hist[quantizedColor]++;
-        }
+    /**
+     * Constructor.
+     *
+     * @param histogram histogram representing an image's pixel data. It is only read, so it can
+     *                  be quantized again later.
+     * @param maxColors The maximum number of colors that should be in the result palette.
+     * @param filters Set of filters to use in the quantization stage
+     * @param colorBuffer array to hold the distinct colors in, if it is large enough, rather than
+     *                    allocating a new one
+     * @param populationBuffer array to hold the populations of the distinct colors in, if it is
+     *                         large enough, rather than allocating a new one
+     */
+    ColorCutQuantizer(ColorHistogram histogram, int maxColors, Palette.Filter @Nullable [] filters,
+            int @Nullable [] colorBuffer, long @Nullable [] populationBuffer) {
+        this(histogram, maxColors, filters, 0, colorBuffer, populationBuffer);
+    }
 
-        // Now let's count the number of distinct colors
+    /**
+     * Constructor.
+     *
+     * @param histogram histogram representing an image's pixel data. It is only read, so it can
+     *                  be quantized again later.
+     * @param maxColors The maximum number of colors that should be in the result palette.
+     * @param filters Set of filters to use in the quantization stage
+     * @param minBoxSize stop splitting once the largest box is smaller than a cube with sides
+     *                   this many RGB888 levels long, or 0 to always split up to maxColors
+     * @param colorBuffer array to hold the distinct colors in, if it is large enough, rather than
+     *                    allocating a new one
+     * @param populationBuffer array to hold the populations of the distinct colors in, if it is
+     *                         large enough, rather than allocating a new one
+     */
+    ColorCutQuantizer(ColorHistogram histogram, int maxColors, Palette.Filter @Nullable [] filters,
+            float minBoxSize, int @Nullable [] colorBuffer, long @Nullable [] populationBuffer) {
+        mFilters = filters;
+        mWordWidth = histogram.mWordWidth;
+        mWordMask = (1 << mWordWidth) - 1;
+        mBinPopulations = new long[1 << mWordWidth];
+        // A quantized level spans 2^(8 - wordWidth) RGB888 levels
+        final double minBoxSide = minBoxSize * (1 << mWordWidth) / 256.0;
+        mMinSplitVolume = minBoxSide * minBoxSide * minBoxSide;
+
+        // Now let's count the number of populated colors
+        final int populatedColorCount = histogram.getPopulatedBucketCount();
+
+        // Now lets go through create an array consisting of only distinct colors which we
+        // shouldn't ignore, along with their populations
+        final int[] colors = mColors = colorBuffer != null && colorBuffer.length >= populatedColorCount
+                                       ? colorBuffer : new int[populatedColorCount];
+        final long[] populations = mPopulations =
+                populationBuffer != null && populationBuffer.length >= populatedColorCount
+                ? populationBuffer : new long[populatedColorCount];
+        final int populatedCount = histogram.getPopulatedBuckets(colors);
+        final IgnoredColors ignoredColors = IgnoredColors.get(filters, mWordWidth);
         int distinctColorCount = 0;
-        for (int color = 0; color < hist.length; color++) {
-            if (hist[color] > 0 && shouldIgnoreColor(color)) {
-                // If we should ignore the color, set the population to 0
-                hist[color] = 0;
-            }
-            if (hist[color] > 0) {
-                // If the color has population, increase the distinct color count
+        for (int i = 0; i < populatedCount; i++) {
+            final int color = colors[i];
+            if (!IgnoredColors.isIgnored(ignoredColors, color)) {
+                colors[distinctColorCount] = color;
+                populations[distinctColorCount] = histogram.getCount(color);
                 distinctColorCount++;
             }
         }
-
-        // Now lets go through create an array consisting of only distinct colors
-        final int[] colors = mColors = new int[distinctColorCount];
-        int distinctColorIndex = 0;
-        for (int color = 0; color < hist.length; color++) {
-            if (hist[color] > 0) {
-                colors[distinctColorIndex++] = color;
-            }
-        }
+        mColorCount = distinctColorCount;
 
         if (distinctColorCount <= maxColors) {
             // The image has fewer colors than the maximum requested, so just return the colors
+            long maxPopulation = 0;
+            for (int i = 0; i < distinctColorCount; i++) {
+                maxPopulation = Math.max(maxPopulation, populations[i]);
+            }
+            final double populationScale = getPopulationScale(maxPopulation);
+
             mQuantizedColors = new ArrayList<>();
-            for (int color : colors) {
-                mQuantizedColors.add(new Palette.Swatch(approximateToRgb888(color), hist[color]));
+            for (int i = 0; i < distinctColorCount; i++) {
+                mQuantizedColors.add(new Palette.Swatch(approximateToRgb888(colors[i], mWordWidth),
+                                                        scalePopulation(populations[i], populationScale)));
             }
         } else {
             // We need use quantization to reduce the number of colors
@@ -115,39 +179,59 @@ final class ColorCutQuantizer {
     }
 
     private List<Palette.Swatch> quantizePixels(int maxColors) {
-        // Create the priority queue which is sorted by volume descending. This means we always
-        // split the largest box in the queue
-        final PriorityQueue<Vbox> pq = new PriorityQueue<>(maxColors, VBOX_COMPARATOR_VOLUME);
+        // Boxes are stored in parallel arrays, indexed by box number. Every split adds one box,
+        // so there are never more than maxColors of them
+        final int capacity = Math.max(1, maxColors);
+        mBoxLower = new int[capacity];
+        mBoxUpper = new int[capacity];
+        mBoxPopulation = new long[capacity];
+        mBoxVolume = new int[capacity];
+        mBoxMinRed = new int[capacity];
+        mBoxMaxRed = new int[capacity];
+        mBoxMinGreen = new int[capacity];
+        mBoxMaxGreen = new int[capacity];
+        mBoxMinBlue = new int[capacity];
+        mBoxMaxBlue = new int[capacity];
+        mBoxCount = 0;
+
+        // Create the heap which is sorted by volume descending. This means we always split the
+        // largest box in the heap
+        mHeap = new int[capacity];
+        mHeapSize = 0;
 
         // To start, offer a box which contains all of the colors
-        pq.offer(new Vbox(0, mColors.length - 1));
+        offer(newBox(0, mColorCount - 1));
 
         // Now go through the boxes, splitting them until we have reached maxColors or there are no
         // more boxes to split
-        splitBoxes(pq, maxColors);
+        splitBoxes(maxColors);
 
         // Finally, return the average colors of the color boxes
-        return generateAverageColors(pq);
+        return generateAverageColors();
     }
 
     /**
-     * Iterate through the {@link java.util.Queue}, popping
-     * {@link ColorCutQuantizer.Vbox} objects from the queue
-     * and splitting them. Once split, the new box and the remaining box are offered back to the
-     * queue.
+     * Iterate through the heap, popping boxes from it and splitting them. Once split, the new box
+     * and the remaining box are offered back to the heap.
+     * <p>
+     * Stops early once the box with the largest volume, at the top of the heap, is smaller than
+     * the minimum split volume. Every other box is then at least as small, so the colors are
+     * already well separated and further splits would only divide shades of the same color.
      *
-     * @param queue {@link java.util.PriorityQueue} to poll for boxes
      * @param maxSize Maximum amount of boxes to split
      */
-    private void splitBoxes(final PriorityQueue<Vbox> queue, final int maxSize) {
-        while (queue.size() < maxSize) {
-            final Vbox vbox = queue.poll();
+    private void splitBoxes(final int maxSize) {
+        while (mHeapSize < maxSize) {
+            if (mHeapSize > 0 && mBoxVolume[mHeap[0]] < mMinSplitVolume) {
+                return;
+            }
+            final int box = poll();
 
-            if (vbox != null && vbox.canSplit()) {
+            if (box >= 0 && canSplit(box)) {
                 // First split the box, and offer the result
-                queue.offer(vbox.splitBox());
+                offer(splitBox(box));
                 // Then offer the box back
-                queue.offer(vbox);
+                offer(box);
             } else {
                 // If we get here then there are no more boxes to split, so return
                 return;
@@ -155,10 +239,16 @@ final class ColorCutQuantizer {
         }
     }
 
-    private List<Palette.Swatch> generateAverageColors(Collection<Vbox> vboxes) {
-        ArrayList<Palette.Swatch> colors = new ArrayList<>(vboxes.size());
-        for (Vbox vbox : vboxes) {
-            Palette.Swatch swatch = vbox.getAverageColor();
+    private List<Palette.Swatch> generateAverageColors() {
+        long maxPopulation = 0;
+        for (int i = 0; i < mHeapSize; i++) {
+            maxPopulation = Math.max(maxPopulation, mBoxPopulation[mHeap[i]]);
+        }
+        final double populationScale = getPopulationScale(maxPopulation);
+
+        ArrayList<Palette.Swatch> colors = new ArrayList<>(mHeapSize);
+        for (int i = 0; i < mHeapSize; i++) {
+            Palette.Swatch swatch = getAverageColor(mHeap[i], populationScale);
             if (!shouldIgnoreColor(swatch)) {
                 // As we're averaging a color box, we can still get colors which we do not want, so
                 // we check again here
@@ -169,231 +259,303 @@ final class ColorCutQuantizer {
     }
 
     /**
-     * Represents a tightly fitting box around a color space.
+     * Adds {@code box} to the heap. This and {@link #poll()} sift exactly like
+     * {@link java.util.PriorityQueue}, so boxes of equal volume are split in the same order as
+     * they always were.
      */
-    private class Vbox {
-        // lower and upper index are inclusive
-        private int mLowerIndex;
-        private int mUpperIndex;
-        // Population of colors within this box
-        private int mPopulation;
-
-        private int mMinRed, mMaxRed;
-        private int mMinGreen, mMaxGreen;
-        private int mMinBlue, mMaxBlue;
-
-        Vbox(int lowerIndex, int upperIndex) {
-            mLowerIndex = lowerIndex;
-            mUpperIndex = upperIndex;
-            fitBox();
-        }
-
-        final int getVolume() {
-            return (mMaxRed - mMinRed + 1) * (mMaxGreen - mMinGreen + 1) *
-                    (mMaxBlue - mMinBlue + 1);
-        }
-
-        final boolean canSplit() {
-            return getColorCount() > 1;
+    private void offer(int box) {
+        final int[] heap = mHeap;
+        final int volume = mBoxVolume[box];
+        int k = mHeapSize++;
+        while (k > 0) {
+            final int parent = (k - 1) >>> 1;
+            final int e = heap[parent];
+            if (volume <= mBoxVolume[e]) {
+                break;
+            }
+            heap[k] = e;
+            k = parent;
         }
+        heap[k] = box;
+    }
 
-        final int getColorCount() {
-            return 1 + mUpperIndex - mLowerIndex;
+    /**
+     * Removes the box with the largest volume from the heap.
+     *
+     * @return the removed box, or -1 if the heap is empty
+     */
+    private int poll() {
+        if (mHeapSize == 0) {
+            return -1;
         }
-
-        /**
-         * Recomputes the boundaries of this box to tightly fit the colors within the box.
-         */
-        final void fitBox() {
-            final int[] colors = mColors;
-            final int[] hist = mHistogram;
-
-            // Reset the min and max to opposite values
-            int minRed, minGreen, minBlue;
-            minRed = minGreen = minBlue = Integer.MAX_VALUE;
-            int maxRed, maxGreen, maxBlue;
-            maxRed = maxGreen = maxBlue = Integer.MIN_VALUE;
-            int count = 0;
-
-            for (int i = mLowerIndex; i <= mUpperIndex; i++) {
-                final int color = colors[i];
-                count += hist[color];
-
-                final int r = quantizedRed(color);
-                final int g = quantizedGreen(color);
-                final int b = quantizedBlue(color);
-                if (r > maxRed) {
-                    maxRed = r;
-                }
-                if (r < minRed) {
-                    minRed = r;
+        final int[] heap = mHeap;
+        final int[] volumes = mBoxVolume;
+        final int result = heap[0];
+        final int n = --mHeapSize;
+        if (n > 0) {
+            final int x = heap[n];
+            final int volume = volumes[x];
+            final int half = n >>> 1;
+            int k = 0;
+            while (k < half) {
+                int child = 2 * k + 1;
+                int c = heap[child];
+                final int right = child + 1;
+                if (right < n && volumes[c] < volumes[heap[right]]) {
+                    c = heap[child = right];
                 }
-                if (g > maxGreen) {
-                    maxGreen = g;
-                }
-                if (g < minGreen) {
-                    minGreen = g;
-                }
-                if (b > maxBlue) {
-                    maxBlue = b;
-                }
-                if (b < minBlue) {
-                    minBlue = b;
+                if (volume >= volumes[c]) {
+                    break;
                 }
+                heap[k] = c;
+                k = child;
             }
-
-            mMinRed = minRed;
-            mMaxRed = maxRed;
-            mMinGreen = minGreen;
-            mMaxGreen = maxGreen;
-            mMinBlue = minBlue;
-            mMaxBlue = maxBlue;
-            mPopulation = count;
+            heap[k] = x;
         }
+        return result;
+    }
 
-        /**
-         * Split this color box at the mid-point along its longest dimension
-         *
-         * @return the new ColorBox
-         */
-        final Vbox splitBox() {
-            if (!canSplit()) {
-                throw new IllegalStateException("Can not split a box with only 1 color");
-            }
-
-            // find median along the longest dimension
-            final int splitPoint = findSplitPoint();
-
-            Vbox newBox = new Vbox(splitPoint + 1, mUpperIndex);
+    /**
+     * Creates a box tightly fitting the colors between {@code lowerIndex} and
+     * {@code upperIndex}, inclusive.
+     *
+     * @return the new box
+     */
+    private int newBox(int lowerIndex, int upperIndex) {
+        final int box = mBoxCount++;
+        mBoxLower[box] = lowerIndex;
+        mBoxUpper[box] = upperIndex;
+        fitBox(box);
+        return box;
+    }
 
-            // Now change this box's upperIndex and recompute the color boundaries
-            mUpperIndex = splitPoint;
-            fitBox();
+    private boolean canSplit(int box) {
+        return getColorCount(box) > 1;
+    }
 
-            return newBox;
-        }
+    private int getColorCount(int box) {
+        return 1 + mBoxUpper[box] - mBoxLower[box];
+    }
 
-        /**
-         * @return the dimension which this box is largest in
-         */
-        final int getLongestColorDimension() {
-            final int redLength = mMaxRed - mMinRed;
-            final int greenLength = mMaxGreen - mMinGreen;
-            final int blueLength = mMaxBlue - mMinBlue;
-
-            if (redLength >= greenLength && redLength >= blueLength) {
-                return COMPONENT_RED;
-            } else if (greenLength >= redLength && greenLength >= blueLength) {
-                return COMPONENT_GREEN;
-            } else {
-                return COMPONENT_BLUE;
+    /**
+     * Recomputes the boundaries of {@code box} to tightly fit the colors within the box, and
+     * caches its population and volume.
+     */
+    private void fitBox(int box) {
+        final int[] colors = mColors;
+        final long[] populations = mPopulations;
+        final int wordWidth = mWordWidth;
+
+        // Reset the min and max to opposite values
+        int minRed, minGreen, minBlue;
+        minRed = minGreen = minBlue = Integer.MAX_VALUE;
+        int maxRed, maxGreen, maxBlue;
+        maxRed = maxGreen = maxBlue = Integer.MIN_VALUE;
+        long count = 0;
+
+        for (int i = mBoxLower[box], upper = mBoxUpper[box]; i <= upper; i++) {
+            final int color = colors[i];
+            count += populations[i];
+
+            final int r = quantizedRed(color, wordWidth);
+            final int g = quantizedGreen(color, wordWidth);
+            final int b = quantizedBlue(color, wordWidth);
+            if (r > maxRed) {
+                maxRed = r;
+            }
+            if (r < minRed) {
+                minRed = r;
+            }
+            if (g > maxGreen) {
+                maxGreen = g;
+            }
+            if (g < minGreen) {
+                minGreen = g;
+            }
+            if (b > maxBlue) {
+                maxBlue = b;
+            }
+            if (b < minBlue) {
+                minBlue = b;
             }
         }
 
-        /**
-         * Finds the point within this box's lowerIndex and upperIndex index of where to split.
-         *
-         * This is calculated by finding the longest color dimension, and then sorting the
-         * sub-array based on that dimension value in each color. The colors are then iterated over
-         * until a color is found with at least the midpoint of the whole box's dimension midpoint.
-         *
-         * @return the index of the colors array to split from
-         */
-        final int findSplitPoint() {
-            final int longestDimension = getLongestColorDimension();
-            final int[] colors = mColors;
-            final int[] hist = mHistogram;
-
-            // We need to sort the colors in this box based on the longest color dimension.
-            // As we can't use a Comparator to define the sort logic, we modify each color so that
-            // its most significant is the desired dimension
-            modifySignificantOctet(colors, longestDimension, mLowerIndex, mUpperIndex);
-
-            // Now sort... Arrays.sort uses a exclusive toIndex so we need to add 1
-            Arrays.sort(colors, mLowerIndex, mUpperIndex + 1);
-
-            // Now revert all of the colors so that they are packed as RGB again
-            modifySignificantOctet(colors, longestDimension, mLowerIndex, mUpperIndex);
-
-            final int midPoint = mPopulation / 2;
-            for (int i = mLowerIndex, count = 0; i <= mUpperIndex; i++)  {
-                count += hist[colors[i]];
-                if (count >= midPoint) {
-                    // we never want to split on the upperIndex, as this will result in the same
-                    // box
-                    return Math.min(mUpperIndex - 1, i);
-                }
-            }
+        mBoxMinRed[box] = minRed;
+        mBoxMaxRed[box] = maxRed;
+        mBoxMinGreen[box] = minGreen;
+        mBoxMaxGreen[box] = maxGreen;
+        mBoxMinBlue[box] = minBlue;
+        mBoxMaxBlue[box] = maxBlue;
+        mBoxPopulation[box] = count;
+        mBoxVolume[box] = (maxRed - minRed + 1) * (maxGreen - minGreen + 1) * (maxBlue - minBlue + 1);
+    }
 
-            return mLowerIndex;
+    /**
+     * Split {@code box} at the mid-point along its longest dimension
+     *
+     * @return the new box
+     */
+    private int splitBox(int box) {
+        if (!canSplit(box)) {
+            throw new IllegalStateException("Can not split a box with only 1 color");
         }
 
-        /**
-         * @return the average color of this box.
-         */
-        final Palette.Swatch getAverageColor() {
-            final int[] colors = mColors;
-            final int[] hist = mHistogram;
-            int redSum = 0;
-            int greenSum = 0;
-            int blueSum = 0;
-            int totalPopulation = 0;
-
-            for (int i = mLowerIndex; i <= mUpperIndex; i++) {
-                final int color = colors[i];
-                final int colorPopulation = hist[color];
-
-                totalPopulation += colorPopulation;
-                redSum += colorPopulation * quantizedRed(color);
-                greenSum += colorPopulation * quantizedGreen(color);
-                blueSum += colorPopulation * quantizedBlue(color);
-            }
+        // find median along the longest dimension
+        final int splitPoint = findSplitPoint(box);
+
+        final int newBox = newBox(splitPoint + 1, mBoxUpper[box]);
 
-            final int redMean = Math.round(redSum / (float) totalPopulation);
-            final int greenMean = Math.round(greenSum / (float) totalPopulation);
-            final int blueMean = Math.round(blueSum / (float) totalPopulation);
+        // Now change this box's upperIndex and recompute the color boundaries
+        mBoxUpper[box] = splitPoint;
+        fitBox(box);
 
-            return new Palette.Swatch(approximateToRgb888(redMean, greenMean, blueMean), totalPopulation);
+        return newBox;
+    }
+
+    /**
+     * @return the dimension which {@code box} is largest in
+     */
+    private int getLongestColorDimension(int box) {
+        final int redLength = mBoxMaxRed[box] - mBoxMinRed[box];
+        final int greenLength = mBoxMaxGreen[box] - mBoxMinGreen[box];
+        final int blueLength = mBoxMaxBlue[box] - mBoxMinBlue[box];
+
+        if (redLength >= greenLength && redLength >= blueLength) {
+            return COMPONENT_RED;
+        } else if (greenLength >= redLength && greenLength >= blueLength) {
+            return COMPONENT_GREEN;
+        } else {
+            return COMPONENT_BLUE;
         }
     }
 
     /**
-     * Modify the significant octet in a packed color int. Allows sorting based on the value of a
-     * single color component. This relies on all components being the same word size.
+     * Finds the point within the box's lowerIndex and upperIndex index of where to split.
+     *
+     * This is calculated by finding the longest color dimension, and then the population median
+     * along it: a counting pass sums the population of each of the dimension's values, and the
+     * split value is the first one at which the running total reaches half of the box's
+     * population. The colors are then partitioned in place so that every color up to the split
+     * value comes first. As the values are only a few bits wide this is linear in the number of
+     * colors, unlike sorting them.
      *
-     * @see Vbox#findSplitPoint()
+     * @return the index of the colors array to split from
      */
-    static void modifySignificantOctet(final int[] a, final int dimension,
-            final int lower, final int upper) {
-        switch (dimension) {
+    private int findSplitPoint(int box) {
+        final int longestDimension = getLongestColorDimension(box);
+        final int[] colors = mColors;
+        final long[] populations = mPopulations;
+        final long[] binPopulations = mBinPopulations;
+        final int mask = mWordMask;
+        final int lowerIndex = mBoxLower[box];
+        final int upperIndex = mBoxUpper[box];
+
+        final int shift, minValue, maxValue;
+        switch (longestDimension) {
             case COMPONENT_RED:
-                // Already in RGB, no need to do anything
+                shift = mWordWidth + mWordWidth;
+                minValue = mBoxMinRed[box];
+                maxValue = mBoxMaxRed[box];
                 break;
             case COMPONENT_GREEN:
-                // We need to do a RGB to GRB swap, or vice-versa
-                for (int i = lower; i <= upper; i++) {
-                    final int color = a[i];
-                    a[i] = quantizedGreen(color) << (QUANTIZE_WORD_WIDTH + QUANTIZE_WORD_WIDTH)
-                            | quantizedRed(color) << QUANTIZE_WORD_WIDTH
-                            | quantizedBlue(color);
-                }
+                shift = mWordWidth;
+                minValue = mBoxMinGreen[box];
+                maxValue = mBoxMaxGreen[box];
                 break;
-            case COMPONENT_BLUE:
-                // We need to do a RGB to BGR swap, or vice-versa
-                for (int i = lower; i <= upper; i++) {
-                    final int color = a[i];
-                    a[i] = quantizedBlue(color) << (QUANTIZE_WORD_WIDTH + QUANTIZE_WORD_WIDTH)
-                            | quantizedGreen(color) << QUANTIZE_WORD_WIDTH
-                            | quantizedRed(color);
-                }
+            default:
+                shift = 0;
+                minValue = mBoxMinBlue[box];
+                maxValue = mBoxMaxBlue[box];
                 break;
         }
+
+        // Sum the population of each value along the longest dimension
+        Arrays.fill(binPopulations, minValue, maxValue + 1, 0);
+        for (int i = lowerIndex; i <= upperIndex; i++) {
+            binPopulations[(colors[i] >> shift) & mask] += populations[i];
+        }
+
+        // Find the value at which the running population reaches the midpoint. We never want to
+        // split after the maximum value, as this will result in the same box. The longest
+        // dimension of a box with more than one color is never empty, so this leaves colors on
+        // both sides
+        final long midPoint = mBoxPopulation[box] / 2;
+        int splitValue = minValue;
+        for (long count = binPopulations[minValue]; count < midPoint && splitValue < maxValue; ) {
+            count += binPopulations[++splitValue];
+        }
+        splitValue = Math.min(splitValue, maxValue - 1);
+
+        // Partition the colors, and their populations with them, so that the ones up to the
+        // split value come first
+        int i = lowerIndex;
+        int j = upperIndex;
+        while (i <= j) {
+            final int color = colors[i];
+            if (((color >> shift) & mask) <= splitValue) {
+                i++;
+            } else {
+                final long population = populations[i];
+                colors[i] = colors[j];
+                populations[i] = populations[j];
+                colors[j] = color;
+                populations[j--] = population;
+            }
+        }
+
+        // i is now the first color after the split value
+        return i - 1;
     }
 
-    private boolean shouldIgnoreColor(int color565) {
-        final int rgb = approximateToRgb888(color565);
-        ColorUtils.colorToHSL(rgb, mTempHsl);
-        return shouldIgnoreColor(rgb, mTempHsl);
+    /**
+     * @param populationScale factor to scale the swatch's population by, see
+     *                        {@link #getPopulationScale(long)}
+     * @return the average color of {@code box}.
+     */
+    private Palette.Swatch getAverageColor(int box, double populationScale) {
+        final int[] colors = mColors;
+        final long[] populations = mPopulations;
+        final int wordWidth = mWordWidth;
+        long redSum = 0;
+        long greenSum = 0;
+        long blueSum = 0;
+        long totalPopulation = 0;
+
+        for (int i = mBoxLower[box], upper = mBoxUpper[box]; i <= upper; i++) {
+            final int color = colors[i];
+            final long colorPopulation = populations[i];
+
+            totalPopulation += colorPopulation;
+            redSum += colorPopulation * quantizedRed(color, wordWidth);
+            greenSum += colorPopulation * quantizedGreen(color, wordWidth);
+            blueSum += colorPopulation * quantizedBlue(color, wordWidth);
+        }
+
+        final int redMean = (int) Math.round(redSum / (double) totalPopulation);
+        final int greenMean = (int) Math.round(greenSum / (double) totalPopulation);
+        final int blueMean = (int) Math.round(blueSum / (double) totalPopulation);
+
+        return new Palette.Swatch(approximateToRgb888(redMean, greenMean, blueMean, wordWidth),
+                                  scalePopulation(totalPopulation, populationScale));
+    }
+
+    /**
+     * Swatch populations are ints, so when the image has more pixels than that, every population
+     * is scaled down by the same factor. This keeps their proportions, which is all that
+     * {@link Palette} uses them for.
+     *
+     * @return the factor to scale populations by so that {@code maxPopulation} fits in an int
+     */
+    static double getPopulationScale(long maxPopulation) {
+        return maxPopulation > Integer.MAX_VALUE ? Integer.MAX_VALUE / (double) maxPopulation : 1;
+    }
+
+    static int scalePopulation(long population, double populationScale) {
+        if (populationScale == 1) {
+            return (int) population;
+        }
+        // Never scale a color away completely
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, Math.round(population * populationScale)));
     }
 
     private boolean shouldIgnoreColor(Palette.Swatch color) {
@@ -401,9 +563,16 @@ final class ColorCutQuantizer {
     }
 
     private boolean shouldIgnoreColor(int rgb, float[] hsl) {
-        if (mFilters != null && mFilters.length > 0) {
-            for (int i = 0, count = mFilters.length; i < count; i++) {
-                if (!mFilters[i].isAllowed(rgb, hsl)) {
+        return shouldIgnoreColor(rgb, hsl, mFilters);
+    }
+
+    /**
+     * @return true if any of {@code filters} rejects the color
+     */
+    static boolean shouldIgnoreColor(int rgb, float[] hsl, Palette.Filter @Nullable [] filters) {
+        if (filters != null && filters.length > 0) {
+            for (int i = 0, count = filters.length; i < count; i++) {
+                if (!filters[i].isAllowed(rgb, hsl)) {
                     return true;
                 }
             }
@@ -412,57 +581,78 @@ final class ColorCutQuantizer {
     }
 
     /**
-     * Comparator which sorts {@link Vbox} instances based on their volume, in descending order
+     * Quantized a RGB888 value to have a word width of {@value #QUANTIZE_WORD_WIDTH}.
      */
-    private static final Comparator<Vbox> VBOX_COMPARATOR_VOLUME = new Comparator<Vbox>() {
-        @Override
-        public int compare(Vbox lhs, Vbox rhs) {
-            return rhs.getVolume() - lhs.getVolume();
-        }
-    };
+    static int quantizeFromRgb888(int color) {
+        return quantizeFromRgb888(color, QUANTIZE_WORD_WIDTH);
+    }
 
     /**
-     * Quantized a RGB888 value to have a word width of {@value #QUANTIZE_WORD_WIDTH}.
+     * Quantized a RGB888 value to have a word width of {@code wordWidth}.
      */
-    private static int quantizeFromRgb888(int color) {
-        int r = modifyWordWidth(ColorUtils.red(color), 8, QUANTIZE_WORD_WIDTH);
-        int g = modifyWordWidth(ColorUtils.green(color), 8, QUANTIZE_WORD_WIDTH);
-        int b = modifyWordWidth(ColorUtils.blue(color), 8, QUANTIZE_WORD_WIDTH);
-        return r << (QUANTIZE_WORD_WIDTH + QUANTIZE_WORD_WIDTH) | g << QUANTIZE_WORD_WIDTH | b;
+    static int quantizeFromRgb888(int color, int wordWidth) {
+        int r = modifyWordWidth(ColorUtils.red(color), 8, wordWidth);
+        int g = modifyWordWidth(ColorUtils.green(color), 8, wordWidth);
+        int b = modifyWordWidth(ColorUtils.blue(color), 8, wordWidth);
+        return r << (wordWidth + wordWidth) | g << wordWidth | b;
     }
 
     /**
      * Quantized RGB888 values to have a word width of {@value #QUANTIZE_WORD_WIDTH}.
      */
     static int approximateToRgb888(int r, int g, int b) {
-        return ColorUtils.rgb(modifyWordWidth(r, QUANTIZE_WORD_WIDTH, 8),
-                modifyWordWidth(g, QUANTIZE_WORD_WIDTH, 8),
-                modifyWordWidth(b, QUANTIZE_WORD_WIDTH, 8));
+        return approximateToRgb888(r, g, b, QUANTIZE_WORD_WIDTH);
+    }
+
+    /**
+     * Approximates components with a word width of {@code wordWidth} as RGB888.
+     */
+    static int approximateToRgb888(int r, int g, int b, int wordWidth) {
+        return ColorUtils.rgb(modifyWordWidth(r, wordWidth, 8),
+                modifyWordWidth(g, wordWidth, 8),
+                modifyWordWidth(b, wordWidth, 8));
     }
 
-    private static int approximateToRgb888(int color) {
-        return approximateToRgb888(quantizedRed(color), quantizedGreen(color), quantizedBlue(color));
+    static int approximateToRgb888(int color) {
+        return approximateToRgb888(color, QUANTIZE_WORD_WIDTH);
+    }
+
+    static int approximateToRgb888(int color, int wordWidth) {
+        return approximateToRgb888(quantizedRed(color, wordWidth), quantizedGreen(color, wordWidth),
+                quantizedBlue(color, wordWidth), wordWidth);
     }
 
     /**
      * @return red component of the quantized color
      */
     static int quantizedRed(int color) {
-        return (color >> (QUANTIZE_WORD_WIDTH + QUANTIZE_WORD_WIDTH)) & QUANTIZE_WORD_MASK;
+        return quantizedRed(color, QUANTIZE_WORD_WIDTH);
+    }
+
+    static int quantizedRed(int color, int wordWidth) {
+        return (color >> (wordWidth + wordWidth)) & ((1 << wordWidth) - 1);
     }
 
     /**
      * @return green component of a quantized color
      */
     static int quantizedGreen(int color) {
-        return (color >> QUANTIZE_WORD_WIDTH) & QUANTIZE_WORD_MASK;
+        return quantizedGreen(color, QUANTIZE_WORD_WIDTH);
+    }
+
+    static int quantizedGreen(int color, int wordWidth) {
+        return (color >> wordWidth) & ((1 << wordWidth) - 1);
     }
 
     /**
      * @return blue component of a quantized color
      */
     static int quantizedBlue(int color) {
-        return color & QUANTIZE_WORD_MASK;
+        return quantizedBlue(color, QUANTIZE_WORD_WIDTH);
+    }
+
+    static int quantizedBlue(int color, int wordWidth) {
+        return color & ((1 << wordWidth) - 1);
     }
 
     private static int modifyWordWidth(int value, int currentWidth, int targetWidth) {
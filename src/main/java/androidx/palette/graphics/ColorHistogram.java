@@ -0,0 +1,560 @@
+package androidx.palette.graphics;
+
+import androidx.core.graphics.ColorUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Population count of every color of an image, with colors quantized to a number of bits per
+ * component, 5 by default, as used by {@link ColorCutQuantizer}.
+ * <p>
+ * Pixels are fed in as packed ARGB ints, either directly or read from a {@link PixelSource} one
+ * tile at a time, so the image never has to be copied into one big pixel array: the read buffer
+ * is bounded by {@link #READ_BUFFER_SIZE}, whatever the size of the image. Counts are kept as
+ * longs, so even images with billions of pixels of the same color can't overflow them.
+ * <p>
+ * At 4 and 5 bits the counts are a dense array of 4096 or 32768 buckets. At 6 bits there are
+ * 262144 buckets, of which an image only ever populates a small fraction, so the counts are kept
+ * in a {@link SparseColorCounts} hash table instead.
+ * <p>
+ * Histograms are handed to a {@link Quantizer}, which reads them through
+ * {@link #getPopulatedBuckets(int[])}, {@link #getCount(int)} and {@link #getRgb(int)}.
+ * <p>
+ * A histogram can also be built and kept by apps, to gather the colors of many images, or of the
+ * tiles of one, and quantize them all at once: add each image with
+ * {@link #addPixels(PixelSource)}, or {@link #merge(ColorHistogram)} histograms which were
+ * counted separately, then call {@link #quantize(Quantizer, int, Palette.Filter[])} or pass the
+ * histogram to {@link Palette#from(ColorHistogram)}. {@link #scale(double)} weighs a histogram
+ * against others, or decays older counts, such as those of earlier video frames, before new
+ * ones are added.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class ColorHistogram {
+    /**
+     * The smallest supported number of bits per color component.
+     */
+    public static final int MIN_PRECISION = 4;
+    /**
+     * The largest supported number of bits per color component.
+     */
+    public static final int MAX_PRECISION = 6;
+
+    /**
+     * Maximum number of pixels read from a {@link PixelSource} in one go. Small enough for the
+     * scratch buffer to stay in cache, large enough to amortize the per-read overhead. Images
+     * narrower than this are read in strips of whole rows, wider ones in tiles of part of a row.
+     */
+    private static final int READ_BUFFER_SIZE = 1 << 14;
+
+    /**
+     * Images with fewer pixels than this are always counted on the calling thread by
+     * {@link #addPixelsInParallel}, as splitting them up costs more than it saves.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 20;
+    // Smallest number of pixels a band of a parallel count is given
+    private static final int MIN_BAND_PIXELS = 1 << 18;
+
+    final int mWordWidth;
+    // Exactly one of these holds the counts
+    final long @Nullable [] mCounts;
+    private final @Nullable SparseColorCounts mSparseCounts;
+
+    // Scratch buffers, kept so that a histogram which is reused through a PaletteWorkspace
+    // doesn't allocate them again
+    private int @Nullable [] mReadBuffer;
+    private int @Nullable [] mIntScratch;
+    private long @Nullable [] mLongScratch;
+    private int @Nullable [] mQuantizeScratch;
+
+    /**
+     * Creates an empty histogram with colors quantized to 5 bits per component, like the one
+     * {@link Palette.Builder} uses by default.
+     */
+    public ColorHistogram() {
+        this(ColorCutQuantizer.QUANTIZE_WORD_WIDTH);
+    }
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param wordWidth the number of bits each color component is quantized to, between
+     *                  {@link #MIN_PRECISION} and {@link #MAX_PRECISION}
+     */
+    public ColorHistogram(int wordWidth) {
+        checkPrecision(wordWidth);
+        mWordWidth = wordWidth;
+        if (wordWidth < MAX_PRECISION) {
+            mCounts = new long[1 << (3 * wordWidth)];
+            mSparseCounts = null;
+        }
+        else {
+            mCounts = null;
+            mSparseCounts = new SparseColorCounts();
+        }
+    }
+
+    static void checkPrecision(int wordWidth) {
+        if (wordWidth < MIN_PRECISION || wordWidth > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION
+                    + " and " + MAX_PRECISION + " bits");
+        }
+    }
+
+    /**
+     * @return the number of bits each color component is quantized to
+     */
+    public int getPrecision() {
+        return mWordWidth;
+    }
+
+    /**
+     * @return the number of color buckets, numbered from 0
+     */
+    public int getBucketCount() {
+        return 1 << (3 * mWordWidth);
+    }
+
+    /**
+     * @return the number of buckets with a count above zero
+     */
+    public int getPopulatedBucketCount() {
+        if (mSparseCounts != null) {
+            return mSparseCounts.size();
+        }
+        int count = 0;
+        for (long population : mCounts) {
+            if (population > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Copies the buckets with a count above zero into {@code buckets}, in ascending order. This
+     * is much quicker than trying every bucket with {@link #getCount(int)}, especially at 6 bits.
+     *
+     * @param buckets an array of at least {@link #getPopulatedBucketCount()} ints
+     * @return the number of buckets copied
+     */
+    public int getPopulatedBuckets(int @NotNull [] buckets) {
+        if (mSparseCounts != null) {
+            return mSparseCounts.getBuckets(buckets);
+        }
+        final long[] counts = mCounts;
+        int count = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            if (counts[bucket] > 0) {
+                buckets[count++] = bucket;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of pixels which fell into the given bucket
+     */
+    public long getCount(int bucket) {
+        return mSparseCounts != null ? mSparseCounts.get(bucket) : mCounts[bucket];
+    }
+
+    /**
+     * @return the RGB888 color which the given bucket stands for
+     */
+    public int getRgb(int bucket) {
+        return ColorCutQuantizer.approximateToRgb888(bucket, mWordWidth);
+    }
+
+    /**
+     * Resets every count to zero, so the histogram can be filled again.
+     */
+    public void clear() {
+        if (mSparseCounts != null) {
+            mSparseCounts.clear();
+        }
+        else {
+            Arrays.fill(mCounts, 0);
+        }
+    }
+
+    /**
+     * Adds {@code length} ARGB pixels, starting at {@code offset}, to the histogram. Alpha is
+     * ignored.
+     */
+    public void addPixels(int @NotNull [] pixels, int offset, int length) {
+        final int wordWidth = mWordWidth;
+        if (mSparseCounts != null) {
+            final SparseColorCounts counts = mSparseCounts;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                counts.add(ColorCutQuantizer.quantizeFromRgb888(pixels[i], wordWidth), 1);
+            }
+        }
+        else {
+            PixelQuantizer.countPixels(pixels, offset, length, wordWidth, mCounts, quantizeScratch());
+        }
+    }
+
+    /**
+     * Takes {@code length} ARGB pixels, starting at {@code offset}, away from the histogram, such
+     * as the previous pixels of a part of an image which has changed. Each of them must have been
+     * added before.
+     */
+    void removePixels(int @NotNull [] pixels, int offset, int length) {
+        final int wordWidth = mWordWidth;
+        if (mSparseCounts != null) {
+            final SparseColorCounts counts = mSparseCounts;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                counts.add(ColorCutQuantizer.quantizeFromRgb888(pixels[i], wordWidth), -1);
+            }
+        }
+        else {
+            final long[] counts = mCounts;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                counts[ColorCutQuantizer.quantizeFromRgb888(pixels[i], wordWidth)]--;
+            }
+        }
+    }
+
+    /**
+     * Adds the counts of {@code other}, which must have the same precision, to this histogram.
+     * {@code other} is left as it is.
+     */
+    public void merge(@NotNull ColorHistogram other) {
+        if (other.mWordWidth != mWordWidth) {
+            throw new IllegalArgumentException("Histograms must have the same precision");
+        }
+        if (mSparseCounts != null) {
+            mSparseCounts.addAll(other.mSparseCounts);
+        }
+        else {
+            final long[] counts = mCounts;
+            final long[] otherCounts = other.mCounts;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                counts[bucket] += otherCounts[bucket];
+            }
+        }
+    }
+
+    /**
+     * Multiplies every count by {@code factor}, rounding to the nearest whole count. Buckets
+     * whose count rounds to zero are no longer populated.
+     * <p>
+     * Scaling by less than 1 before adding new pixels decays the old ones, so a histogram can
+     * follow a changing image, and scaling histograms before merging them weighs some images more
+     * than others.
+     *
+     * @param factor the factor to multiply counts by, at least 0
+     */
+    public void scale(double factor) {
+        if (!(factor >= 0) || Double.isInfinite(factor)) {
+            throw new IllegalArgumentException("factor must be a finite number of at least 0");
+        }
+        if (factor == 1) {
+            return;
+        }
+        if (mSparseCounts != null) {
+            mSparseCounts.scale(factor);
+        }
+        else {
+            final long[] counts = mCounts;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                if (counts[bucket] > 0) {
+                    counts[bucket] = Math.round(counts[bucket] * factor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reduces the colors of this histogram to at most {@code maxColors} swatches. Pass the
+     * swatches to {@link Palette#from(List)}, or the histogram to
+     * {@link Palette#from(ColorHistogram)}, to pick targets from them.
+     *
+     * @param quantizer the quantizer to use, such as {@link Quantizer#colorCut()}.
+     * @param maxColors the maximum number of swatches to return.
+     * @param filters   the filters which every returned swatch must be allowed by, or
+     *                  {@code null} to allow any color.
+     */
+    public @NotNull List<Palette.Swatch> quantize(@NotNull Quantizer quantizer, int maxColors,
+            Palette.Filter @Nullable [] filters) {
+        if (maxColors < 1) {
+            throw new IllegalArgumentException("maxColors must be at least 1");
+        }
+        return quantizer.quantize(this, maxColors, filters);
+    }
+
+    /**
+     * Adds a single pixel of the given ARGB color to the histogram.
+     */
+    private void addPixel(int color) {
+        final int bucket = ColorCutQuantizer.quantizeFromRgb888(color, mWordWidth);
+        if (mSparseCounts != null) {
+            mSparseCounts.add(bucket, 1);
+        }
+        else {
+            mCounts[bucket]++;
+        }
+    }
+
+    /**
+     * Adds every pixel of {@code source}, such as a {@link android.graphics.Bitmap} wrapped with
+     * {@link PixelSource#of(android.graphics.Bitmap)}, to the histogram.
+     */
+    public void addPixels(@NotNull PixelSource source) {
+        addPixels(source, 0, 0, source.getWidth(), source.getHeight());
+    }
+
+    /**
+     * Adds the pixels of the given rectangle of {@code source} to the histogram. The rectangle
+     * must lie within the source.
+     */
+    public void addPixels(@NotNull PixelSource source, int x, int y, int width, int height) {
+        if (x < 0 || y < 0 || width < 0 || height < 0
+                || x + width > source.getWidth() || y + height > source.getHeight()) {
+            throw new IllegalArgumentException("The rectangle is not within the source");
+        }
+        if (width == 0 || height == 0) {
+            return;
+        }
+        final int tileWidth = Math.min(width, READ_BUFFER_SIZE);
+        final int tileHeight = Math.max(1, Math.min(height, READ_BUFFER_SIZE / tileWidth));
+        final int[] buffer = readBuffer();
+        for (int row = 0; row < height; row += tileHeight) {
+            final int rows = Math.min(tileHeight, height - row);
+            for (int col = 0; col < width; col += tileWidth) {
+                final int cols = Math.min(tileWidth, width - col);
+                source.getPixels(buffer, 0, cols, x + col, y + row, cols, rows);
+                addPixels(buffer, 0, rows * cols);
+            }
+        }
+    }
+
+    /**
+     * Adds the pixels of the given rectangle of {@code source} to the histogram like
+     * {@link #addPixels(PixelSource, int, int, int, int)}, but split into one band of rows per
+     * thread of the common {@link ForkJoinPool}, plus one which the calling thread counts into
+     * this histogram. Each other band is counted into a partial histogram of its own, and those
+     * are merged at the end. {@code source} must support concurrent reads. Rectangles smaller
+     * than {@link #PARALLEL_THRESHOLD} pixels are counted on the calling thread.
+     */
+    void addPixelsInParallel(@NotNull PixelSource source, int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        final long pixels = (long) width * height;
+        final int bands = (int) Math.min(Math.min(ForkJoinPool.getCommonPoolParallelism() + 1,
+                                                  pixels / MIN_BAND_PIXELS), height);
+        if (pixels < PARALLEL_THRESHOLD || bands <= 1) {
+            addPixels(source, x, y, width, height);
+            return;
+        }
+
+        final CountTask[] tasks = new CountTask[bands - 1];
+        for (int band = 1; band < bands; band++) {
+            final int top = bandTop(band, height, bands);
+            tasks[band - 1] = new CountTask(source, x, y + top, width,
+                                            bandTop(band + 1, height, bands) - top);
+            tasks[band - 1].fork();
+        }
+        addPixels(source, x, y, width, bandTop(1, height, bands));
+        for (CountTask task : tasks) {
+            merge(task.join());
+        }
+    }
+
+    /**
+     * @return the first of {@code height} rows which belongs to {@code band} of {@code bands}
+     */
+    private static int bandTop(int band, int height, int bands) {
+        return (int) ((long) band * height / bands);
+    }
+
+    /**
+     * Adds a {@code sampledWidth} x {@code sampledHeight} grid of pixels, evenly spread over the
+     * given rectangle of {@code source}, to the histogram. Each sample is the pixel nearest to the
+     * center of its grid cell, so this acts like a nearest neighbour downscale of the rectangle
+     * without drawing into an intermediate bitmap.
+     */
+    void addSampledPixels(@NotNull PixelSource source, int x, int y, int width, int height,
+            int sampledWidth, int sampledHeight) {
+        sampledWidth = Math.min(sampledWidth, width);
+        sampledHeight = Math.min(sampledHeight, height);
+        if (sampledWidth <= 0 || sampledHeight <= 0) {
+            return;
+        }
+
+        final int[] sampledColumns = intScratch(sampledWidth);
+        for (int col = 0; col < sampledWidth; col++) {
+            sampledColumns[col] = sampleOffset(col, width, sampledWidth);
+        }
+
+        // Only the span between the first and last sampled column has to be decoded, in pieces
+        // of at most READ_BUFFER_SIZE pixels
+        final int endColumn = sampledColumns[sampledWidth - 1] + 1;
+        final int[] scanline = readBuffer();
+        final int pieceLength = Math.min(READ_BUFFER_SIZE, endColumn - sampledColumns[0]);
+        for (int row = 0; row < sampledHeight; row++) {
+            final int sourceRow = y + sampleOffset(row, height, sampledHeight);
+            // The source columns [pieceStart, pieceEnd) currently held in scanline
+            int pieceStart = 0, pieceEnd = 0;
+            for (int col = 0; col < sampledWidth; col++) {
+                final int sourceColumn = sampledColumns[col];
+                if (sourceColumn >= pieceEnd) {
+                    pieceStart = sourceColumn;
+                    pieceEnd = Math.min(endColumn, pieceStart + pieceLength);
+                    source.getPixels(scanline, 0, pieceLength, x + pieceStart, sourceRow,
+                                     pieceEnd - pieceStart, 1);
+                }
+                addPixel(scanline[sourceColumn - pieceStart]);
+            }
+        }
+    }
+
+    /**
+     * Box filters the given rectangle of {@code source} down to {@code scaledWidth} x
+     * {@code scaledHeight} pixels and adds those to the histogram. Every source pixel belongs to
+     * exactly one output pixel, whose color is the average of all of the pixels it covers.
+     * <p>
+     * Source rows are read in pieces of at most {@link #READ_BUFFER_SIZE} pixels and summed per
+     * output column, so an output pixel is quantized as soon as its last row has been read and no
+     * scaled bitmap is ever created.
+     */
+    void addAveragedPixels(@NotNull PixelSource source, int x, int y, int width, int height,
+            int scaledWidth, int scaledHeight) {
+        scaledWidth = Math.min(scaledWidth, width);
+        scaledHeight = Math.min(scaledHeight, height);
+        if (scaledWidth <= 0 || scaledHeight <= 0) {
+            return;
+        }
+
+        final int[] scanline = readBuffer();
+        final int pieceLength = Math.min(width, READ_BUFFER_SIZE);
+        // Red, green and blue sums of each output column, next to each other
+        final long[] sums = longScratch(3 * scaledWidth);
+        final int[] pixelCounts = intScratch(scaledWidth);
+        Arrays.fill(sums, 0, 3 * scaledWidth, 0);
+        Arrays.fill(pixelCounts, 0, scaledWidth, 0);
+
+        for (int scaledRow = 0, row = 0; scaledRow < scaledHeight; scaledRow++) {
+            final int lastRow = (int) ((long) (scaledRow + 1) * height / scaledHeight);
+            for (; row < lastRow; row++) {
+                // Source column col is averaged into output column col * scaledWidth / width, so
+                // track the first source column of the next output column as we go
+                int scaledCol = 0;
+                int nextBoundary = columnBoundary(1, width, scaledWidth);
+                for (int pieceStart = 0; pieceStart < width; pieceStart += pieceLength) {
+                    final int pieceWidth = Math.min(pieceLength, width - pieceStart);
+                    source.getPixels(scanline, 0, pieceWidth, x + pieceStart, y + row, pieceWidth, 1);
+                    for (int i = 0; i < pieceWidth; i++) {
+                        while (pieceStart + i >= nextBoundary) {
+                            nextBoundary = columnBoundary(++scaledCol + 1, width, scaledWidth);
+                        }
+                        final int pixel = scanline[i];
+                        sums[3 * scaledCol] += ColorUtils.red(pixel);
+                        sums[3 * scaledCol + 1] += ColorUtils.green(pixel);
+                        sums[3 * scaledCol + 2] += ColorUtils.blue(pixel);
+                        pixelCounts[scaledCol]++;
+                    }
+                }
+            }
+
+            // This output row is complete, so emit its averaged colors and reset the sums
+            for (int scaledCol = 0; scaledCol < scaledWidth; scaledCol++) {
+                final int count = pixelCounts[scaledCol];
+                if (count > 0) {
+                    final int half = count / 2;
+                    final int color = ColorUtils.rgb(
+                            (int) ((sums[3 * scaledCol] + half) / count),
+                            (int) ((sums[3 * scaledCol + 1] + half) / count),
+                            (int) ((sums[3 * scaledCol + 2] + half) / count));
+                    addPixel(color);
+                }
+            }
+            Arrays.fill(sums, 0, 3 * scaledWidth, 0);
+            Arrays.fill(pixelCounts, 0, scaledWidth, 0);
+        }
+    }
+
+    private int[] readBuffer() {
+        if (mReadBuffer == null) {
+            mReadBuffer = new int[READ_BUFFER_SIZE];
+        }
+        return mReadBuffer;
+    }
+
+    /**
+     * @return the scratch array of {@link PixelQuantizer#countPixels}
+     */
+    private int[] quantizeScratch() {
+        if (mQuantizeScratch == null) {
+            mQuantizeScratch = new int[PixelQuantizer.getScratchSize()];
+        }
+        return mQuantizeScratch;
+    }
+
+    /**
+     * @return a scratch array of at least {@code size} ints, with undefined contents
+     */
+    private int[] intScratch(int size) {
+        if (mIntScratch == null || mIntScratch.length < size) {
+            mIntScratch = new int[size];
+        }
+        return mIntScratch;
+    }
+
+    /**
+     * @return a scratch array of at least {@code size} longs, with undefined contents
+     */
+    private long[] longScratch(int size) {
+        if (mLongScratch == null || mLongScratch.length < size) {
+            mLongScratch = new long[size];
+        }
+        return mLongScratch;
+    }
+
+    /**
+     * @return the first of {@code width} source columns which is averaged into output column
+     * {@code scaledCol}, or later, when scaling down to {@code scaledWidth} columns
+     */
+    private static int columnBoundary(int scaledCol, int width, int scaledWidth) {
+        // The smallest col for which col * scaledWidth / width >= scaledCol
+        return (int) (((long) scaledCol * width + scaledWidth - 1) / scaledWidth);
+    }
+
+    /**
+     * @return the offset of the pixel in the middle of the {@code index}th of {@code samples}
+     * equally sized cells covering {@code length} pixels
+     */
+    private static int sampleOffset(int index, int length, int samples) {
+        return (int) ((2L * index + 1) * length / (2L * samples));
+    }
+
+    /**
+     * Counts a band of rows into a new histogram.
+     */
+    private final class CountTask extends RecursiveTask<ColorHistogram> {
+        private final PixelSource mSource;
+        private final int mX, mY, mWidth, mHeight;
+
+        CountTask(PixelSource source, int x, int y, int width, int height) {
+            mSource = source;
+            mX = x;
+            mY = y;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        @Override
+        protected ColorHistogram compute() {
+            final ColorHistogram histogram = new ColorHistogram(mWordWidth);
+            histogram.addPixels(mSource, mX, mY, mWidth, mHeight);
+            return histogram;
+        }
+    }
+}
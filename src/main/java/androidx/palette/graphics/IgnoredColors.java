@@ -0,0 +1,95 @@
+package androidx.palette.graphics;
+
+import androidx.core.graphics.ColorUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Which of the histogram buckets a set of {@link Palette.Filter}s rejects, so that quantizers can
+ * skip ignored colors with a bit test instead of converting every populated bucket to HSL and
+ * calling every filter on it.
+ * <p>
+ * Building the bitmask evaluates the filters for every bucket of the color cube, which only pays
+ * off when the same filters are used again. So a mask is only built, once per precision, for
+ * {@link Palette#DEFAULT_FILTER} on its own, which almost every builder uses and which always
+ * gives the same answer for the same color. Any other filters are called for the buckets as they
+ * are asked about, which only costs as much as the image has populated buckets, and lets them
+ * change their answers from one generate to the next.
+ */
+final class IgnoredColors {
+    // The buckets the default filter rejects, indexed by precision and built when first needed
+    private static final AtomicReferenceArray<long[]> DEFAULT_MASKS =
+            new AtomicReferenceArray<>(ColorHistogram.MAX_PRECISION + 1);
+
+    private final Palette.Filter[] mFilters;
+    private final int mWordWidth;
+    // The buckets the filters reject, or null to test buckets as they are asked about
+    private final long @Nullable [] mMask;
+    private final float[] mTempHsl = new float[3];
+
+    private IgnoredColors(Palette.Filter[] filters, int wordWidth, long @Nullable [] mask) {
+        mFilters = filters;
+        mWordWidth = wordWidth;
+        mMask = mask;
+    }
+
+    /**
+     * @return the buckets of a {@code wordWidth} bits histogram which {@code filters} reject,
+     * for {@link #isIgnored(IgnoredColors, int)}, or {@code null} if there are no filters and so
+     * nothing is ignored. The result must only be used by one thread.
+     */
+    static @Nullable IgnoredColors get(Palette.Filter @Nullable [] filters, int wordWidth) {
+        if (filters == null || filters.length == 0) {
+            return null;
+        }
+        if (filters.length == 1 && filters[0] == Palette.DEFAULT_FILTER) {
+            long[] mask = DEFAULT_MASKS.get(wordWidth);
+            if (mask == null) {
+                // Two threads may both build it, but they build the same mask
+                mask = computeMask(filters, wordWidth);
+                DEFAULT_MASKS.set(wordWidth, mask);
+            }
+            return new IgnoredColors(filters, wordWidth, mask);
+        }
+        return new IgnoredColors(filters.clone(), wordWidth, null);
+    }
+
+    /**
+     * @return true if {@code ignoredColors} marks {@code bucket} as ignored. {@code null}
+     * ignores nothing.
+     */
+    static boolean isIgnored(@Nullable IgnoredColors ignoredColors, int bucket) {
+        return ignoredColors != null && ignoredColors.isIgnored(bucket);
+    }
+
+    private boolean isIgnored(int bucket) {
+        if (mMask != null) {
+            return (mMask[bucket >>> 6] & (1L << bucket)) != 0;
+        }
+        final int rgb = ColorCutQuantizer.approximateToRgb888(bucket, mWordWidth);
+        ColorUtils.colorToHSL(rgb, mTempHsl);
+        return ColorCutQuantizer.shouldIgnoreColor(rgb, mTempHsl, mFilters);
+    }
+
+    /**
+     * @return true if the bucket tests are done with a bitmask
+     */
+    boolean hasMask() {
+        return mMask != null;
+    }
+
+    private static long[] computeMask(Palette.Filter[] filters, int wordWidth) {
+        final int bucketCount = 1 << (3 * wordWidth);
+        final long[] mask = new long[(bucketCount + 63) >>> 6];
+        final float[] hsl = new float[3];
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            final int rgb = ColorCutQuantizer.approximateToRgb888(bucket, wordWidth);
+            ColorUtils.colorToHSL(rgb, hsl);
+            if (ColorCutQuantizer.shouldIgnoreColor(rgb, hsl, filters)) {
+                mask[bucket >>> 6] |= 1L << bucket;
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,86 @@
+package androidx.palette.graphics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link Palette} of an image which is edited a little at a time, such as the canvas of a
+ * drawing tool, which can be brought up to date without reading the whole image again.
+ * <p>
+ * Created by {@link Palette.Builder#generateIncremental()}, which counts every pixel of the image,
+ * or of its region, into a {@link ColorHistogram} that is kept. After part of the image changes,
+ * {@link #update(int, int, int, int, int[])} takes the old pixels of the changed rectangle out of
+ * the histogram, reads the new ones from the source and quantizes the histogram again. An update
+ * therefore costs time in proportion to the changed area, plus a quantization, however large the
+ * image is.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class IncrementalPalette {
+    private final PixelSource mSource;
+    private final int mX, mY, mWidth, mHeight;
+    private final ColorHistogram mHistogram;
+    // Quantizes mHistogram with the settings of the builder this was generated from
+    private final Palette.Builder mBuilder;
+
+    private @NotNull Palette mPalette;
+
+    IncrementalPalette(PixelSource source, int x, int y, int width, int height,
+            ColorHistogram histogram, Palette.Builder builder) {
+        mSource = source;
+        mX = x;
+        mY = y;
+        mWidth = width;
+        mHeight = height;
+        mHistogram = histogram;
+        mBuilder = builder;
+        mPalette = builder.generate();
+    }
+
+    /**
+     * @return the palette of the image as of the last update
+     */
+    public @NotNull Palette getPalette() {
+        return mPalette;
+    }
+
+    /**
+     * Brings the palette up to date after the pixels of the given rectangle of the source have
+     * changed. The source must already hold the new pixels. Only the part of the rectangle within
+     * the builder's region, if one was set, is used.
+     *
+     * @param x         the left side of the changed rectangle.
+     * @param y         the top of the changed rectangle.
+     * @param width     the width of the changed rectangle.
+     * @param height    the height of the changed rectangle.
+     * @param oldPixels the ARGB pixels the rectangle held before it changed, row by row, with
+     *                  {@code width} pixels per row.
+     * @return the updated palette, which {@link #getPalette()} returns from now on.
+     */
+    public @NotNull Palette update(int x, int y, int width, int height,
+            int @NotNull [] oldPixels) {
+        if (x < 0 || y < 0 || width < 0 || height < 0
+                || x + width > mSource.getWidth() || y + height > mSource.getHeight()) {
+            throw new IllegalArgumentException("The rectangle is not within the source");
+        }
+        if (oldPixels.length < (long) width * height) {
+            throw new IllegalArgumentException("oldPixels must hold at least width * height colors");
+        }
+
+        // The part of the rectangle which the histogram covers
+        final int left = Math.max(x, mX);
+        final int top = Math.max(y, mY);
+        final int right = Math.min(x + width, mX + mWidth);
+        final int bottom = Math.min(y + height, mY + mHeight);
+        if (left >= right || top >= bottom) {
+            return mPalette;
+        }
+
+        for (int row = top; row < bottom; row++) {
+            mHistogram.removePixels(oldPixels, (row - y) * width + (left - x), right - left);
+        }
+        mHistogram.addPixels(mSource, left, top, right - left, bottom - top);
+
+        mPalette = mBuilder.generate();
+        return mPalette;
+    }
+}
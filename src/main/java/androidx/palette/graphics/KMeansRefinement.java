@@ -0,0 +1,224 @@
+package androidx.palette.graphics;
+
+import androidx.core.graphics.ColorUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Moves the colors of quantized swatches towards the centers of the pixels they stand for, with
+ * a few iterations of weighted k-means (Lloyd's algorithm) over the populated colors of the
+ * histogram.
+ * <p>
+ * Quantizers average each of their boxes, but box bounds are axis aligned, so for gradients and
+ * other colors which don't fall into neat boxes a swatch is often off the center of the colors
+ * nearest to it. Each iteration assigns every color to its nearest swatch and moves each swatch to
+ * the population weighted mean of its colors, until no swatch moves further than the convergence
+ * threshold.
+ * <p>
+ * The assignment step is split over the common {@link ForkJoinPool} when there is enough work.
+ * Sums are kept in longs, so the result doesn't depend on how the work was split.
+ */
+final class KMeansRefinement {
+    // Colors x swatches below which an iteration isn't worth splitting over threads
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    // Number of colors each fork join task handles, at least
+    private static final int MIN_CHUNK_SIZE = 1 << 10;
+
+    private final int[] mColors;
+    private final long[] mWeights;
+    private final int mColorCount;
+    private final Palette.Filter @Nullable [] mFilters;
+
+    // Red, green and blue of each swatch, next to each other
+    private double[] mCenters;
+    private int mCenterCount;
+
+    /**
+     * @param histogram the histogram the swatches were quantized from.
+     * @param filters   the filters of the quantization, so colors the swatches never stood for
+     *                  don't pull them away, and refined swatches stay allowed.
+     */
+    KMeansRefinement(ColorHistogram histogram, Palette.Filter @Nullable [] filters) {
+        final int[] buckets = new int[histogram.getPopulatedBucketCount()];
+        final int populated = histogram.getPopulatedBuckets(buckets);
+
+        mColors = new int[populated];
+        mWeights = new long[populated];
+        final IgnoredColors ignoredColors = IgnoredColors.get(filters, histogram.getPrecision());
+        int colorCount = 0;
+        for (int i = 0; i < populated; i++) {
+            if (!IgnoredColors.isIgnored(ignoredColors, buckets[i])) {
+                mColors[colorCount] = histogram.getRgb(buckets[i]);
+                mWeights[colorCount] = histogram.getCount(buckets[i]);
+                colorCount++;
+            }
+        }
+        mColorCount = colorCount;
+        mFilters = filters;
+    }
+
+    /**
+     * Refines {@code swatches}.
+     *
+     * @param maxIterations the maximum number of assign and update steps.
+     * @param threshold     stop early once no swatch moves further than this, as a distance in
+     *                      RGB888 units.
+     * @return the refined swatches, leaving out any which no color is nearest to or which
+     * the filters don't allow.
+     */
+    List<Palette.Swatch> refine(List<Palette.Swatch> swatches, int maxIterations, float threshold) {
+        if (swatches.isEmpty() || mColorCount == 0 || maxIterations <= 0) {
+            return swatches;
+        }
+
+        mCenterCount = swatches.size();
+        mCenters = new double[3 * mCenterCount];
+        for (int i = 0; i < mCenterCount; i++) {
+            final int rgb = swatches.get(i).getRgb();
+            mCenters[3 * i] = ColorUtils.red(rgb);
+            mCenters[3 * i + 1] = ColorUtils.green(rgb);
+            mCenters[3 * i + 2] = ColorUtils.blue(rgb);
+        }
+
+        final double thresholdSquared = (double) threshold * threshold;
+        long[] sums = null;
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            sums = assign();
+            if (update(sums) <= thresholdSquared) {
+                break;
+            }
+        }
+        // The populations are those of the last assignment, which the centers were moved to
+        return generateSwatches(sums);
+    }
+
+    /**
+     * Assigns every color to its nearest center.
+     *
+     * @return the total weight and the weighted red, green and blue sums of each center's
+     * colors, next to each other
+     */
+    private long[] assign() {
+        final AssignTask task = new AssignTask(0, mColorCount);
+        if ((long) mColorCount * mCenterCount < PARALLEL_THRESHOLD) {
+            return task.compute();
+        }
+        return ForkJoinPool.commonPool().invoke(task);
+    }
+
+    /**
+     * Moves every center to the mean of its colors. Centers which no color is nearest to stay
+     * where they are.
+     *
+     * @return the square of the largest distance any center moved
+     */
+    private double update(long[] sums) {
+        double maxMove = 0;
+        for (int i = 0; i < mCenterCount; i++) {
+            final long weight = sums[4 * i];
+            if (weight == 0) {
+                continue;
+            }
+            final double red = sums[4 * i + 1] / (double) weight;
+            final double green = sums[4 * i + 2] / (double) weight;
+            final double blue = sums[4 * i + 3] / (double) weight;
+            final double dr = red - mCenters[3 * i];
+            final double dg = green - mCenters[3 * i + 1];
+            final double db = blue - mCenters[3 * i + 2];
+            maxMove = Math.max(maxMove, dr * dr + dg * dg + db * db);
+            mCenters[3 * i] = red;
+            mCenters[3 * i + 1] = green;
+            mCenters[3 * i + 2] = blue;
+        }
+        return maxMove;
+    }
+
+    private List<Palette.Swatch> generateSwatches(long[] sums) {
+        long maxPopulation = 0;
+        for (int i = 0; i < mCenterCount; i++) {
+            maxPopulation = Math.max(maxPopulation, sums[4 * i]);
+        }
+        final double populationScale = ColorCutQuantizer.getPopulationScale(maxPopulation);
+
+        final List<Palette.Swatch> swatches = new ArrayList<>(mCenterCount);
+        for (int i = 0; i < mCenterCount; i++) {
+            final long population = sums[4 * i];
+            if (population == 0) {
+                continue;
+            }
+            final Palette.Swatch swatch = new Palette.Swatch(
+                    ColorUtils.rgb((int) Math.round(mCenters[3 * i]),
+                                   (int) Math.round(mCenters[3 * i + 1]),
+                                   (int) Math.round(mCenters[3 * i + 2])),
+                    ColorCutQuantizer.scalePopulation(population, populationScale));
+            // The mean of allowed colors isn't necessarily allowed itself, so check again
+            if (!ColorCutQuantizer.shouldIgnoreColor(swatch.getRgb(), swatch.getHsl(), mFilters)) {
+                swatches.add(swatch);
+            }
+        }
+        return swatches;
+    }
+
+    /**
+     * Assigns the colors in [start, end) to their nearest centers, splitting the range in two
+     * while it is large.
+     */
+    private final class AssignTask extends RecursiveTask<long[]> {
+        private final int mStart;
+        private final int mEnd;
+
+        AssignTask(int start, int end) {
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (mEnd - mStart > MIN_CHUNK_SIZE && getPool() != null) {
+                final int middle = (mStart + mEnd) >>> 1;
+                final AssignTask upper = new AssignTask(middle, mEnd);
+                upper.fork();
+                final long[] sums = new AssignTask(mStart, middle).compute();
+                final long[] upperSums = upper.join();
+                for (int i = 0; i < sums.length; i++) {
+                    sums[i] += upperSums[i];
+                }
+                return sums;
+            }
+
+            final double[] centers = mCenters;
+            final int centerCount = mCenterCount;
+            final long[] sums = new long[4 * centerCount];
+            for (int c = mStart; c < mEnd; c++) {
+                final int rgb = mColors[c];
+                final int r = ColorUtils.red(rgb);
+                final int g = ColorUtils.green(rgb);
+                final int b = ColorUtils.blue(rgb);
+
+                int nearest = 0;
+                double nearestDistance = Double.MAX_VALUE;
+                for (int i = 0; i < centerCount; i++) {
+                    final double dr = r - centers[3 * i];
+                    final double dg = g - centers[3 * i + 1];
+                    final double db = b - centers[3 * i + 2];
+                    final double distance = dr * dr + dg * dg + db * db;
+                    if (distance < nearestDistance) {
+                        nearestDistance = distance;
+                        nearest = i;
+                    }
+                }
+
+                final long weight = mWeights[c];
+                sums[4 * nearest] += weight;
+                sums[4 * nearest + 1] += weight * r;
+                sums[4 * nearest + 2] += weight * g;
+                sums[4 * nearest + 3] += weight * b;
+            }
+            return sums;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package androidx.palette.graphics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link PixelSource} reading a raw image file through memory mapping, so the pixels live in
+ * the OS page cache instead of the Java heap or a native Pixmap. Meant for images too large to
+ * comfortably decode into memory, such as map tiles or scans.
+ * <p>
+ * The file starts with a 16 byte header followed by tightly packed rows of pixels:
+ * <pre>
+ * offset  size  content
+ *      0     4  magic, the ASCII bytes "PXRW"
+ *      4     4  width in pixels, big endian
+ *      8     4  height in pixels, big endian
+ *     12     4  layout of the pixels, big endian: 1 = RGBA8888, 2 = ARGB8888,
+ *               3 = BGRA8888, 4 = RGB888
+ *     16        height rows of width * bytes per pixel bytes
+ * </pre>
+ * {@link #writeHeader(OutputStream, int, int, PixelSource.Layout)} writes a matching header.
+ */
+public final class MappedPixelSource implements PixelSource {
+    static final int MAGIC = 'P' << 24 | 'X' << 16 | 'R' << 8 | 'W';
+    static final int HEADER_SIZE = 16;
+
+    private static final PixelSource.Layout[] LAYOUT_CODES = {
+            null,
+            PixelSource.Layout.RGBA8888,
+            PixelSource.Layout.ARGB8888,
+            PixelSource.Layout.BGRA8888,
+            PixelSource.Layout.RGB888
+    };
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mRowsPerChunk;
+    // A single mapping can't exceed 2GB, so large files are mapped as several bands of rows
+    private final PixelSource[] mChunks;
+
+    private MappedPixelSource(int width, int height, int rowsPerChunk, PixelSource[] chunks) {
+        mWidth = width;
+        mHeight = height;
+        mRowsPerChunk = rowsPerChunk;
+        mChunks = chunks;
+    }
+
+    /**
+     * Maps the raw image file at {@code path}. The file is closed again before this returns; the
+     * mapping stays valid until this source is garbage collected.
+     *
+     * @throws IOException if the file can't be read, or its header is invalid
+     */
+    public static @NotNull MappedPixelSource open(@NotNull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("File is too short for a raw image header: " + path);
+                }
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a raw image file: " + path);
+            }
+            final int width = header.getInt();
+            final int height = header.getInt();
+            final int layoutCode = header.getInt();
+            if (width <= 0 || height <= 0) {
+                throw new IOException("Invalid raw image dimensions " + width + "x" + height);
+            }
+            if (layoutCode <= 0 || layoutCode >= LAYOUT_CODES.length) {
+                throw new IOException("Unknown raw image layout " + layoutCode);
+            }
+            final PixelSource.Layout layout = LAYOUT_CODES[layoutCode];
+
+            final long rowSize = (long) width * layout.bytesPerPixel;
+            if (rowSize > Integer.MAX_VALUE) {
+                throw new IOException("Raw image rows are too wide to be mapped: " + width);
+            }
+            if (channel.size() < HEADER_SIZE + rowSize * height) {
+                throw new IOException("Raw image file is truncated: " + path);
+            }
+
+            final int rowsPerChunk = (int) Math.min(height, Integer.MAX_VALUE / rowSize);
+            final PixelSource[] chunks = new PixelSource[(height + rowsPerChunk - 1) / rowsPerChunk];
+            for (int i = 0; i < chunks.length; i++) {
+                final int rows = Math.min(rowsPerChunk, height - i * rowsPerChunk);
+                final ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                                                      HEADER_SIZE + i * rowsPerChunk * rowSize,
+                                                      rows * rowSize);
+                chunks[i] = PixelSource.of(mapped, width, rows, layout);
+            }
+            return new MappedPixelSource(width, height, rowsPerChunk, chunks);
+        }
+    }
+
+    /**
+     * Writes the header of a raw image file. It should be followed by {@code height} rows of
+     * {@code width} pixels in the given {@code layout}.
+     *
+     * @throws IllegalArgumentException if the dimensions aren't positive or the layout can't be
+     *                                  stored in a raw image file, in which case nothing is written
+     */
+    public static void writeHeader(@NotNull OutputStream out, int width, int height,
+            PixelSource.@NotNull Layout layout) throws IOException {
+        PixelSources.checkDimensions(width, height);
+        final int layoutCode = getLayoutCode(layout);
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeInt(layoutCode);
+        data.flush();
+    }
+
+    private static int getLayoutCode(PixelSource.@Nullable Layout layout) {
+        if (layout != null) {
+            for (int code = 1; code < LAYOUT_CODES.length; code++) {
+                if (LAYOUT_CODES[code] == layout) {
+                    return code;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Layout has no raw image code: " + layout);
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public void getPixels(int @NotNull [] pixels, int offset, int stride, int x, int y, int width, int height) {
+        PixelSources.checkPixelsAccess(this, x, y, width, height, offset, stride, pixels);
+
+        // Split the read at chunk boundaries
+        int row = 0;
+        while (row < height) {
+            final int srcY = y + row;
+            final int chunk = srcY / mRowsPerChunk;
+            final int chunkY = srcY - chunk * mRowsPerChunk;
+            final int rows = Math.min(height - row, mRowsPerChunk - chunkY);
+            mChunks[chunk].getPixels(pixels, offset + row * stride, stride, x, chunkY, width, rows);
+            row += rows;
+        }
+    }
+}
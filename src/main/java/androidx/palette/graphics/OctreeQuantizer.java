@@ -0,0 +1,303 @@
+package androidx.palette.graphics;
+
+import androidx.core.graphics.ColorUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A color quantizer which is fed pixels incrementally, for images which are streamed row by row
+ * such as network images or video frames, based on Gervautz and Purgathofer's octree.
+ * <p>
+ * Each level of the tree splits the RGB cube in eight along the next bit of every component, so
+ * a leaf at the bottom holds a single color. Leaves keep the population and the per-channel sums
+ * of their pixels. The tree never holds more than the node budget given to the constructor: when
+ * a pixel would exceed it, the deepest branches are folded into their parents, which then become
+ * leaves holding the average of everything below them. Memory use is therefore fixed however many
+ * pixels are added, and no histogram or pixel array of the whole image is ever needed.
+ * <p>
+ * {@link #getSwatches(int, Palette.Filter[])} reduces a copy of the tree to the requested number
+ * of leaves, so pixels can keep being added afterwards. Pass the swatches to
+ * {@link Palette#from(List)} to get a {@link Palette}. {@link Quantizer#octree()} uses this to
+ * quantize a {@link ColorHistogram} like any other {@link Quantizer}.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class OctreeQuantizer {
+    /**
+     * The node budget of {@link #OctreeQuantizer()}: enough to keep around a thousand distinct
+     * colors apart, in under 300KB.
+     */
+    public static final int DEFAULT_MAX_NODES = 4096;
+
+    // Leaves are at most this deep, where they hold a single RGB888 color
+    private static final int MAX_DEPTH = 8;
+    // Adding a color creates at most one node per level, so the budget needs at least that much
+    static final int MIN_NODES = MAX_DEPTH + 1;
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    private final int mMaxNodes;
+
+    // The nodes, as parallel arrays indexed by node number. A node is free if its level is -1
+    private final int[] mChildren;
+    private final byte[] mLevels;
+    private final boolean[] mLeaves;
+    private final long[] mPopulations;
+    private final long[] mRedSums;
+    private final long[] mGreenSums;
+    private final long[] mBlueSums;
+    // Links of the per level lists of branch nodes, or of the free list for free nodes
+    private final int[] mNext;
+
+    // The most recently created branch of each level, heads of the lists linked through mNext
+    private final int[] mBranches = new int[MAX_DEPTH];
+    private int mFreeHead;
+    // Nodes numbered below this have been used at some point
+    private int mHighWater;
+    private int mNodeCount;
+    private int mLeafCount;
+
+    private final float[] mTempHsl = new float[3];
+
+    /**
+     * Creates an empty tree with a budget of {@link #DEFAULT_MAX_NODES} nodes.
+     */
+    public OctreeQuantizer() {
+        this(DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * Creates an empty tree.
+     *
+     * @param maxNodes the maximum number of nodes the tree may hold, at least 9. Each node takes
+     *                 about 70 bytes. A larger budget keeps more distinct colors apart before they
+     *                 are averaged together.
+     */
+    public OctreeQuantizer(int maxNodes) {
+        if (maxNodes < MIN_NODES) {
+            throw new IllegalArgumentException("maxNodes must be at least " + MIN_NODES);
+        }
+        mMaxNodes = maxNodes;
+        // Room for the nodes of one more color, which are folded away again straight after
+        final int capacity = maxNodes + MAX_DEPTH;
+        mChildren = new int[capacity * 8];
+        mLevels = new byte[capacity];
+        mLeaves = new boolean[capacity];
+        mPopulations = new long[capacity];
+        mRedSums = new long[capacity];
+        mGreenSums = new long[capacity];
+        mBlueSums = new long[capacity];
+        mNext = new int[capacity];
+        clear();
+    }
+
+    private OctreeQuantizer(OctreeQuantizer other) {
+        mMaxNodes = other.mMaxNodes;
+        mChildren = other.mChildren.clone();
+        mLevels = other.mLevels.clone();
+        mLeaves = other.mLeaves.clone();
+        mPopulations = other.mPopulations.clone();
+        mRedSums = other.mRedSums.clone();
+        mGreenSums = other.mGreenSums.clone();
+        mBlueSums = other.mBlueSums.clone();
+        mNext = other.mNext.clone();
+        System.arraycopy(other.mBranches, 0, mBranches, 0, MAX_DEPTH);
+        mFreeHead = other.mFreeHead;
+        mHighWater = other.mHighWater;
+        mNodeCount = other.mNodeCount;
+        mLeafCount = other.mLeafCount;
+    }
+
+    /**
+     * Removes every pixel, so the tree can be filled again.
+     */
+    public void clear() {
+        Arrays.fill(mLevels, (byte) -1);
+        Arrays.fill(mBranches, NONE);
+        mFreeHead = NONE;
+        mHighWater = 0;
+        mNodeCount = 0;
+        mLeafCount = 0;
+        newNode(0);
+    }
+
+    /**
+     * Adds a row, or any other run, of ARGB pixels to the tree. Alpha is ignored.
+     */
+    public void addPixels(int @NotNull [] pixels) {
+        addPixels(pixels, 0, pixels.length);
+    }
+
+    /**
+     * Adds {@code length} ARGB pixels, starting at {@code offset}, to the tree. Alpha is ignored.
+     */
+    public void addPixels(int @NotNull [] pixels, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            addColor(pixels[i], 1);
+        }
+    }
+
+    /**
+     * Adds {@code count} pixels of the given ARGB color to the tree. Alpha is ignored.
+     */
+    public void addColor(int color, long count) {
+        if (count <= 0) {
+            return;
+        }
+        final int r = ColorUtils.red(color);
+        final int g = ColorUtils.green(color);
+        final int b = ColorUtils.blue(color);
+
+        int node = ROOT;
+        while (!mLeaves[node]) {
+            final int level = mLevels[node];
+            final int shift = MAX_DEPTH - 1 - level;
+            final int index = ((r >> shift) & 1) << 2 | ((g >> shift) & 1) << 1 | ((b >> shift) & 1);
+            int child = mChildren[node * 8 + index];
+            if (child == NONE) {
+                child = newNode(level + 1);
+                mChildren[node * 8 + index] = child;
+            }
+            node = child;
+        }
+        mPopulations[node] += count;
+        mRedSums[node] += count * r;
+        mGreenSums[node] += count * g;
+        mBlueSums[node] += count * b;
+
+        while (mNodeCount > mMaxNodes) {
+            reduce();
+        }
+    }
+
+    /**
+     * @return the number of nodes currently in the tree
+     */
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    /**
+     * Returns the average colors of at most {@code maxColors} groups of the pixels added so far.
+     * Colors which aren't allowed by {@code filters} are left out. The tree itself is left as
+     * it is.
+     *
+     * @param maxColors the maximum number of swatches to return.
+     * @param filters   the filters which every returned swatch must be allowed by, or
+     *                  {@code null} to allow any color.
+     */
+    public @NotNull List<Palette.Swatch> getSwatches(int maxColors,
+            Palette.Filter @Nullable [] filters) {
+        if (maxColors < 1) {
+            throw new IllegalArgumentException("maxColors must be at least 1");
+        }
+        final OctreeQuantizer tree = mLeafCount > maxColors ? new OctreeQuantizer(this) : this;
+        while (tree.mLeafCount > maxColors) {
+            tree.reduce();
+        }
+        return tree.generateAverageColors(filters);
+    }
+
+    private List<Palette.Swatch> generateAverageColors(Palette.Filter @Nullable [] filters) {
+        long maxPopulation = 0;
+        for (int node = 0; node < mHighWater; node++) {
+            if (mLeaves[node]) {
+                maxPopulation = Math.max(maxPopulation, mPopulations[node]);
+            }
+        }
+        final double populationScale = ColorCutQuantizer.getPopulationScale(maxPopulation);
+
+        final List<Palette.Swatch> colors = new ArrayList<>(mLeafCount);
+        for (int node = 0; node < mHighWater; node++) {
+            final long population = mPopulations[node];
+            if (!mLeaves[node] || population <= 0) {
+                continue;
+            }
+            final int rgb = ColorUtils.rgb(
+                    (int) Math.round(mRedSums[node] / (double) population),
+                    (int) Math.round(mGreenSums[node] / (double) population),
+                    (int) Math.round(mBlueSums[node] / (double) population));
+            ColorUtils.colorToHSL(rgb, mTempHsl);
+            if (!ColorCutQuantizer.shouldIgnoreColor(rgb, mTempHsl, filters)) {
+                colors.add(new Palette.Swatch(
+                        rgb, ColorCutQuantizer.scalePopulation(population, populationScale)));
+            }
+        }
+        return colors;
+    }
+
+    /**
+     * Folds the children of the most recently created branch of the deepest level into it. As
+     * no branch is deeper, its children are all leaves.
+     */
+    private void reduce() {
+        int level = MAX_DEPTH - 1;
+        while (mBranches[level] == NONE) {
+            level--;
+        }
+        final int node = mBranches[level];
+        mBranches[level] = mNext[node];
+
+        long population = 0, redSum = 0, greenSum = 0, blueSum = 0;
+        int childCount = 0;
+        for (int i = node * 8, end = i + 8; i < end; i++) {
+            final int child = mChildren[i];
+            if (child != NONE) {
+                population += mPopulations[child];
+                redSum += mRedSums[child];
+                greenSum += mGreenSums[child];
+                blueSum += mBlueSums[child];
+                childCount++;
+                freeNode(child);
+                mChildren[i] = NONE;
+            }
+        }
+        mLeaves[node] = true;
+        mPopulations[node] = population;
+        mRedSums[node] = redSum;
+        mGreenSums[node] = greenSum;
+        mBlueSums[node] = blueSum;
+        mLeafCount += 1 - childCount;
+    }
+
+    private int newNode(int level) {
+        final int node;
+        if (mFreeHead != NONE) {
+            node = mFreeHead;
+            mFreeHead = mNext[node];
+        }
+        else {
+            node = mHighWater++;
+        }
+        Arrays.fill(mChildren, node * 8, node * 8 + 8, NONE);
+        mLevels[node] = (byte) level;
+        mPopulations[node] = 0;
+        mRedSums[node] = 0;
+        mGreenSums[node] = 0;
+        mBlueSums[node] = 0;
+        if (level == MAX_DEPTH) {
+            mLeaves[node] = true;
+            mLeafCount++;
+        }
+        else {
+            mLeaves[node] = false;
+            mNext[node] = mBranches[level];
+            mBranches[level] = node;
+        }
+        mNodeCount++;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        mLevels[node] = -1;
+        mLeaves[node] = false;
+        mNext[node] = mFreeHead;
+        mFreeHead = node;
+        mNodeCount--;
+    }
+}
@@ -17,6 +17,7 @@
 package androidx.palette.graphics;
 
 import android.graphics.Bitmap;
+import android.graphics.PixmapPool;
 import android.util.SparseBooleanArray;
 import androidx.annotation.ColorInt;
 import androidx.core.graphics.ColorUtils;
@@ -25,6 +26,8 @@ import com.badlogic.gdx.utils.ObjectMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -82,6 +85,7 @@ public final class Palette {
 
     static final int DEFAULT_RESIZE_BITMAP_AREA = 112 * 112;
     static final int DEFAULT_CALCULATE_NUMBER_COLORS = 16;
+    static final float DEFAULT_REFINEMENT_THRESHOLD = 0.5f;
 
     static final float MIN_CONTRAST_TITLE_TEXT = 3.0f;
     static final float MIN_CONTRAST_BODY_TEXT = 4.5f;
@@ -96,6 +100,52 @@ public final class Palette {
         return new Builder(bitmap);
     }
 
+    /**
+     * Start generating a {@link Palette} from any {@link PixelSource} with the returned
+     * {@link Builder} instance.
+     */
+    public static @NotNull Builder from(@NotNull PixelSource source) {
+        return new Builder(source);
+    }
+
+    /**
+     * Start generating a {@link Palette} from the colors counted into {@code histogram} with the
+     * returned {@link Builder} instance. {@link Builder#resizeBitmapArea(int)} and the other
+     * options which read an image have no effect on the returned builder.
+     */
+    public static @NotNull Builder from(@NotNull ColorHistogram histogram) {
+        return new Builder(histogram);
+    }
+
+    /**
+     * Start generating a {@link Palette} from a PNG image with the returned {@link Builder}
+     * instance. See {@link #fromPng(InputStream, int, int)}.
+     */
+    public static @NotNull Builder fromPng(@NotNull InputStream png) throws IOException {
+        return fromPng(png, 1, 1);
+    }
+
+    /**
+     * Start generating a {@link Palette} from a PNG image with the returned {@link Builder}
+     * instance.
+     * <p>
+     * The image is decoded right away, one scanline at a time, straight into the color histogram,
+     * so it never has to fit in memory as a whole. Only every {@code rowStep}th row and every
+     * {@code columnStep}th column are used, which is how large images should be scaled down:
+     * {@link Builder#resizeBitmapArea(int)}, {@link Builder#resizeBitmapSize(int)} and
+     * {@link Builder#setRegion(int, int, int, int)} have no effect on the returned builder.
+     * <p>
+     * The stream is read up to the end of the image data, but not closed.
+     *
+     * @throws IOException if the stream can't be read or is not a valid PNG image
+     */
+    public static @NotNull Builder fromPng(@NotNull InputStream png, int rowStep, int columnStep)
+            throws IOException {
+        final ColorHistogram histogram = new ColorHistogram();
+        PngDecoder.decode(png, rowStep, columnStep, histogram);
+        return new Builder(histogram);
+    }
+
     /**
      * Generate a {@link Palette} from the pre-generated list of {@link Palette.Swatch} swatches.
      * This is useful for testing, or if you want to resurrect a {@link Palette} instance from a
@@ -146,10 +196,31 @@ public final class Palette {
 
     private final @Nullable Swatch mDominantSwatch;
 
+    // The color, population, saturation and lightness of each swatch, in the order of mSwatches.
+    // Scoring reads these for every swatch and target, so they are copied out of the swatches
+    // once rather than fetched through them every time
+    private final int[] mRgbs;
+    private final int[] mPopulations;
+    private final float[] mSaturations;
+    private final float[] mLightnesses;
+
     Palette(List<Swatch> swatches, List<Target> targets) {
         mSwatches = swatches;
         mTargets = targets;
 
+        final int count = swatches.size();
+        mRgbs = new int[count];
+        mPopulations = new int[count];
+        mSaturations = new float[count];
+        mLightnesses = new float[count];
+        for (int i = 0; i < count; i++) {
+            final Swatch swatch = swatches.get(i);
+            mRgbs[i] = swatch.mRgb;
+            mPopulations[i] = swatch.mPopulation;
+            mSaturations[i] = swatch.mSaturation;
+            mLightnesses[i] = swatch.mLightness;
+        }
+
         mUsedColors = new SparseBooleanArray();
         mSelectedSwatches = new ObjectMap<>();
 
@@ -356,31 +427,35 @@ public final class Palette {
 
     private @Nullable Swatch getMaxScoredSwatchForTarget(final Target target) {
         float maxScore = 0;
-        Swatch maxScoreSwatch = null;
-        for (int i = 0, count = mSwatches.size(); i < count; i++) {
-            final Swatch swatch = mSwatches.get(i);
-            if (shouldBeScoredForTarget(swatch, target)) {
-                final float score = generateScore(swatch, target);
-                if (maxScoreSwatch == null || score > maxScore) {
-                    maxScoreSwatch = swatch;
+        int maxScoreIndex = -1;
+        for (int i = 0, count = mRgbs.length; i < count; i++) {
+            if (shouldBeScoredForTarget(i, target)) {
+                final float score = generateScore(i, target);
+                if (maxScoreIndex < 0 || score > maxScore) {
+                    maxScoreIndex = i;
                     maxScore = score;
                 }
             }
         }
-        return maxScoreSwatch;
+        return maxScoreIndex >= 0 ? mSwatches.get(maxScoreIndex) : null;
     }
 
-    private boolean shouldBeScoredForTarget(final Swatch swatch, final Target target) {
+    /**
+     * @param index the index of the swatch in {@link #mSwatches}
+     */
+    private boolean shouldBeScoredForTarget(final int index, final Target target) {
         // Check whether the HSL values are within the correct ranges, and this color hasn't been used yet.
-        final float hsl[] = swatch.getHsl();
-        return hsl[1] >= target.getMinimumSaturation() && hsl[1] <= target.getMaximumSaturation()
-                && hsl[2] >= target.getMinimumLightness() && hsl[2] <= target.getMaximumLightness()
-                && !mUsedColors.get(swatch.getRgb());
+        final float saturation = mSaturations[index];
+        final float lightness = mLightnesses[index];
+        return saturation >= target.getMinimumSaturation() && saturation <= target.getMaximumSaturation()
+                && lightness >= target.getMinimumLightness() && lightness <= target.getMaximumLightness()
+                && !mUsedColors.get(mRgbs[index]);
     }
 
-    private float generateScore(Swatch swatch, Target target) {
-        final float[] hsl = swatch.getHsl();
-
+    /**
+     * @param index the index of the swatch in {@link #mSwatches}
+     */
+    private float generateScore(int index, Target target) {
         float saturationScore = 0;
         float luminanceScore = 0;
         float populationScore = 0;
@@ -389,15 +464,15 @@ public final class Palette {
 
         if (target.getSaturationWeight() > 0) {
             saturationScore = target.getSaturationWeight()
-                    * (1f - Math.abs(hsl[1] - target.getTargetSaturation()));
+                    * (1f - Math.abs(mSaturations[index] - target.getTargetSaturation()));
         }
         if (target.getLightnessWeight() > 0) {
             luminanceScore = target.getLightnessWeight()
-                    * (1f - Math.abs(hsl[2] - target.getTargetLightness()));
+                    * (1f - Math.abs(mLightnesses[index] - target.getTargetLightness()));
         }
         if (target.getPopulationWeight() > 0) {
             populationScore = target.getPopulationWeight()
-                    * (swatch.getPopulation() / (float) maxPopulation);
+                    * (mPopulations[index] / (float) maxPopulation);
         }
 
         return saturationScore + luminanceScore + populationScore;
@@ -421,22 +496,26 @@ public final class Palette {
      * by calling {@link #getRgb()}.
      */
     public static final class Swatch {
-        private final int mRed, mGreen, mBlue;
-        private final int mRgb;
-        private final int mPopulation;
+        final int mRgb;
+        final int mPopulation;
+        // HSL, worked out once here as palettes read it for every target
+        final float mHue, mSaturation, mLightness;
 
         private boolean mGeneratedTextColors;
         private int mTitleTextColor;
         private int mBodyTextColor;
 
-        private float @Nullable [] mHsl;
+        // Returned by getHsl(), and refilled every time in case the caller changed it
+        private final float @NotNull [] mHsl = new float[3];
 
         public Swatch(@ColorInt int color, int population) {
-            mRed = ColorUtils.red(color);
-            mGreen = ColorUtils.green(color);
-            mBlue = ColorUtils.blue(color);
             mRgb = color;
             mPopulation = population;
+            ColorUtils.RGBToHSL(ColorUtils.red(color), ColorUtils.green(color),
+                                ColorUtils.blue(color), mHsl);
+            mHue = mHsl[0];
+            mSaturation = mHsl[1];
+            mLightness = mHsl[2];
         }
 
         /**
@@ -454,10 +533,9 @@ public final class Palette {
          * hsv[2] is Lightness [0...1]
          */
         public float @NotNull [] getHsl() {
-            if (mHsl == null) {
-                mHsl = new float[3];
-            }
-            ColorUtils.RGBToHSL(mRed, mGreen, mBlue, mHsl);
+            mHsl[0] = mHue;
+            mHsl[1] = mSaturation;
+            mHsl[2] = mLightness;
             return mHsl;
         }
 
@@ -567,7 +645,8 @@ public final class Palette {
      */
     public static final class Builder {
         private final @Nullable List<Swatch> mSwatches;
-        private final @Nullable Bitmap mBitmap;
+        private final @Nullable PixelSource mSource;
+        private final @Nullable ColorHistogram mHistogram;
 
         private final List<Target> mTargets = new ArrayList<>();
 
@@ -577,19 +656,55 @@ public final class Palette {
 
         private final List<Filter> mFilters = new ArrayList<>();
         private @Nullable Rectangle mRegion;
+        private @NotNull ScaleMode mScaleMode = ScaleMode.SCALED_BITMAP;
+        private @NotNull Quantizer mQuantizer = Quantizer.colorCut();
+        private int mRefinementIterations;
+        private int mPrecision = ColorCutQuantizer.QUANTIZE_WORD_WIDTH;
+        private boolean mParallel;
+        private float mRefinementThreshold = DEFAULT_REFINEMENT_THRESHOLD;
+        private @Nullable PixmapPool mPixmapPool;
+        private @Nullable PaletteWorkspace mWorkspace;
 
         /**
          * Construct a new {@link Builder} using a source {@link Bitmap}
          */
         public Builder(@NotNull Bitmap bitmap) {
-            if (bitmap == null || bitmap.isDisposed()) {
-                throw new IllegalArgumentException("Bitmap is not valid");
+            this(PixelSource.of(checkBitmap(bitmap)));
+        }
+
+        /**
+         * Construct a new {@link Builder} using any {@link PixelSource}, such as pixels which are
+         * already in memory.
+         */
+        public Builder(@NotNull PixelSource source) {
+            if (source == null || source.getWidth() <= 0 || source.getHeight() <= 0) {
+                throw new IllegalArgumentException("PixelSource is not valid");
+            }
+            mFilters.add(DEFAULT_FILTER);
+            mSource = source;
+            mHistogram = null;
+            mSwatches = null;
+
+            addDefaultTargets();
+        }
+
+        /**
+         * Construct a new {@link Builder} using the histogram of an already decoded image, or
+         * of several images. The histogram must not change while the palette is generated.
+         */
+        public Builder(@NotNull ColorHistogram histogram) {
+            if (histogram == null) {
+                throw new IllegalArgumentException("ColorHistogram is not valid");
             }
             mFilters.add(DEFAULT_FILTER);
-            mBitmap = bitmap;
+            mHistogram = histogram;
+            mSource = null;
             mSwatches = null;
 
-            // Add the default targets
+            addDefaultTargets();
+        }
+
+        private void addDefaultTargets() {
             mTargets.add(Target.LIGHT_VIBRANT);
             mTargets.add(Target.VIBRANT);
             mTargets.add(Target.DARK_VIBRANT);
@@ -608,7 +723,15 @@ public final class Palette {
             }
             mFilters.add(DEFAULT_FILTER);
             mSwatches = swatches;
-            mBitmap = null;
+            mSource = null;
+            mHistogram = null;
+        }
+
+        private static Bitmap checkBitmap(Bitmap bitmap) {
+            if (bitmap == null || bitmap.isDisposed()) {
+                throw new IllegalArgumentException("Bitmap is not valid");
+            }
+            return bitmap;
         }
 
         /**
@@ -651,6 +774,10 @@ public final class Palette {
          * This value has a large effect on the processing time. The larger the resized image is,
          * the greater time it will take to generate the palette. The smaller the image is, the
          * more detail is lost in the resulting image and thus less precision for color selection.
+         * <p>
+         * With resizing disabled the source is read tile by tile at full resolution, so even
+         * very large images, such as a {@link MappedPixelSource}, only need a small fixed amount
+         * of memory on top of the color histogram.
          *
          * @param area the number of pixels that the intermediary scaled down Bitmap should cover,
          *             or any value <= 0 to disable resizing.
@@ -661,6 +788,133 @@ public final class Palette {
             return this;
         }
 
+        /**
+         * Set how the bitmap is scaled down when it is larger than the resize value set with
+         * {@link #resizeBitmapArea(int)} or {@link #resizeBitmapSize(int)}. Defaults to
+         * {@link ScaleMode#SCALED_BITMAP}, which sources other than a {@link Bitmap}, or one
+         * wrapped with {@link PixelSource#of(Bitmap)}, treat as {@link ScaleMode#SUBSAMPLE}.
+         *
+         * @param mode the scaling strategy to use.
+         */
+        public @NotNull Builder setScaleMode(@NotNull ScaleMode mode) {
+            if (mode == null) {
+                throw new IllegalArgumentException("ScaleMode must not be null");
+            }
+            mScaleMode = mode;
+            return this;
+        }
+
+        /**
+         * Set the algorithm which reduces the image's colors to at most
+         * {@link #maximumColorCount(int)} swatches. Defaults to {@link Quantizer#colorCut()}.
+         *
+         * @param quantizer the quantizer to use, such as {@link Quantizer#wu()} or one of your own.
+         */
+        public @NotNull Builder setQuantizer(@NotNull Quantizer quantizer) {
+            if (quantizer == null) {
+                throw new IllegalArgumentException("Quantizer must not be null");
+            }
+            mQuantizer = quantizer;
+            return this;
+        }
+
+        /**
+         * Set the number of bits each color component is quantized to before the quantizer runs.
+         * Defaults to 5, so there are 32768 distinct colors.
+         * <p>
+         * 4 bits (4096 colors) keeps the histogram small enough for the CPU's fastest cache and
+         * is plenty for thumbnails. 6 bits (262144 colors) tells apart shades which 5 bits merge,
+         * such as brand colors, and keeps only the colors the image actually has. Ignored by
+         * builders from {@link Palette#fromPng(InputStream)}, whose histogram is counted while
+         * decoding, and by builders from a {@link ColorHistogram}, which has its own precision.
+         *
+         * @param bitsPerComponent between {@link ColorHistogram#MIN_PRECISION} and
+         *                         {@link ColorHistogram#MAX_PRECISION}.
+         */
+        public @NotNull Builder setPrecision(int bitsPerComponent) {
+            ColorHistogram.checkPrecision(bitsPerComponent);
+            mPrecision = bitsPerComponent;
+            return this;
+        }
+
+        /**
+         * Set whether an image which isn't scaled down, see {@link #resizeBitmapArea(int)}, is
+         * read on several threads. Bands of rows are then counted into partial histograms on the
+         * common {@link java.util.concurrent.ForkJoinPool}, which are merged at the end. Images
+         * of less than a megapixel are still read on the calling thread. Off by default.
+         * <p>
+         * The source is read concurrently, which {@link Bitmap} and the sources from
+         * {@link PixelSource} support. Sources of your own must too.
+         *
+         * @param parallel true to read large unscaled images on several threads.
+         */
+        public @NotNull Builder setParallel(boolean parallel) {
+            mParallel = parallel;
+            return this;
+        }
+
+        /**
+         * Refine the quantized swatches with up to {@code maxIterations} iterations of weighted
+         * k-means over the image's colors, stopping early once no swatch moves by more than half
+         * a color step. Off by default.
+         *
+         * @see #setRefinement(int, float)
+         */
+        public @NotNull Builder setRefinement(int maxIterations) {
+            return setRefinement(maxIterations, DEFAULT_REFINEMENT_THRESHOLD);
+        }
+
+        /**
+         * Refine the quantized swatches with weighted k-means: every color of the image is
+         * assigned to its nearest swatch, and each swatch is moved to the population weighted mean
+         * of its colors. This re-centers swatches which the quantizer's boxes left off-center, as
+         * is common for gradients, at the cost of some extra work per {@link #generate()}, which
+         * is spread over the common {@link java.util.concurrent.ForkJoinPool} for large images.
+         * Off by default, so latency-sensitive callers pay nothing for it.
+         *
+         * @param maxIterations the maximum number of iterations, or {@code 0} to turn refinement
+         *                      off.
+         * @param convergenceThreshold stop early once no swatch moves further than this, as a
+         *                             distance in RGB888 units.
+         */
+        public @NotNull Builder setRefinement(int maxIterations, float convergenceThreshold) {
+            if (maxIterations < 0) {
+                throw new IllegalArgumentException("maxIterations must be >= 0");
+            }
+            if (!(convergenceThreshold >= 0)) {
+                throw new IllegalArgumentException("convergenceThreshold must be >= 0");
+            }
+            mRefinementIterations = maxIterations;
+            mRefinementThreshold = convergenceThreshold;
+            return this;
+        }
+
+        /**
+         * Set a pool to borrow the scaled down bitmap's Pixmap from when using
+         * {@link ScaleMode#SCALED_BITMAP}, instead of allocating and disposing a new native
+         * Pixmap for every {@link #generate()}. Worth sharing between builders when generating
+         * many palettes from similarly sized images.
+         *
+         * @param pool the pool to use, or {@code null} to allocate a new Pixmap every time.
+         */
+        public @NotNull Builder setPixmapPool(@Nullable PixmapPool pool) {
+            mPixmapPool = pool;
+            return this;
+        }
+
+        /**
+         * Set the scratch memory to use in {@link #generate()}, instead of allocating new buffers
+         * every time. The workspace must not be used by another generate at the same time, see
+         * {@link PaletteWorkspace}.
+         *
+         * @param workspace the workspace to use, such as {@link PaletteWorkspace#forCurrentThread()},
+         *                  or {@code null} to allocate new buffers every time.
+         */
+        public @NotNull Builder setWorkspace(@Nullable PaletteWorkspace workspace) {
+            mWorkspace = workspace;
+            return this;
+        }
+
         /**
          * Clear all added filters. This includes any default filters added automatically by
          * {@link Palette}.
@@ -685,7 +939,9 @@ public final class Palette {
 
         /**
          * Set a region of the bitmap to be used exclusively when calculating the palette.
-         * <p>This only works when the original input is a {@link Bitmap}.</p>
+         * <p>This only works when the original input is a {@link Bitmap} or {@link PixelSource}.
+         * Only the region's pixels are read, and the resize value applies to the region rather
+         * than to the whole bitmap.</p>
          *
          * @param left   The left side of the rectangle used for the region.
          * @param top    The top of the rectangle used for the region.
@@ -693,16 +949,19 @@ public final class Palette {
          * @param bottom The bottom of the rectangle used for the region.
          */
         public @NotNull Builder setRegion(int left, int top, int right, int bottom) {
-            if (mBitmap != null) {
-                if (mRegion == null) mRegion = new Rectangle();
-                // Set the Rectangle to be initially the whole Bitmap
-                mRegion.set(0, 0, mBitmap.getWidth(), mBitmap.getHeight());
-                // Now just get the intersection with the region
-//                if (!mRegion.intersect(left, top, right, bottom)) {
-                if (!(mRegion.x < left + right && mRegion.x + mRegion.width > left && mRegion.y < top + bottom && mRegion.y + mRegion.height > top)) {
+            if (mSource != null) {
+                // Get the intersection of the region with the whole Bitmap
+                final int intersectLeft = Math.max(left, 0);
+                final int intersectTop = Math.max(top, 0);
+                final int intersectRight = Math.min(right, mSource.getWidth());
+                final int intersectBottom = Math.min(bottom, mSource.getHeight());
+                if (intersectLeft >= intersectRight || intersectTop >= intersectBottom) {
                     throw new IllegalArgumentException("The given region must intersect with "
                                                                + "the Bitmap's dimensions.");
                 }
+                if (mRegion == null) mRegion = new Rectangle();
+                mRegion.set(intersectLeft, intersectTop,
+                            intersectRight - intersectLeft, intersectBottom - intersectTop);
             }
             return this;
         }
@@ -744,44 +1003,79 @@ public final class Palette {
         public @NotNull Palette generate() {
             List<Swatch> swatches;
 
-            if (mBitmap != null) {
-                // We have a Bitmap so we need to use quantization to reduce the number of colors
-
-                // First we'll scale down the bitmap if needed
-                final Bitmap bitmap = scaleBitmapDown(mBitmap);
-
-                final Rectangle region = mRegion;
-                if (bitmap != mBitmap && region != null) {
-                    // If we have a scaled bitmap and a selected region, we need to scale down the
-                    // region to match the new scale
-                    final double scale = bitmap.getWidth() / (double) mBitmap.getWidth();
-                    region.x = (int) Math.floor(region.x * scale);
-                    region.y = (int) Math.floor(region.y * scale);
-                    region.width = Math.min((int) Math.ceil(region.width * scale),
-                                            bitmap.getWidth());
-                    region.height = Math.min((int) Math.ceil(region.height * scale),
-                                             bitmap.getHeight());
-                }
+            if (mSource != null) {
+                // We have an image so we need to use quantization to reduce the number of colors
 
-                // Now generate a quantizer from the Bitmap
-                final ColorCutQuantizer quantizer = new ColorCutQuantizer(
-                        getPixelsFromBitmap(bitmap),
-                        mMaxColors,
-                        mFilters.isEmpty() ? null : mFilters.toArray(new Filter[mFilters.size()]));
+                // Only the region's pixels are read, and scaled, if one is set
+                final int x, y, width, height;
+                if (mRegion != null) {
+                    x = (int) mRegion.x;
+                    y = (int) mRegion.y;
+                    width = (int) mRegion.width;
+                    height = (int) mRegion.height;
+                }
+                else {
+                    x = 0;
+                    y = 0;
+                    width = mSource.getWidth();
+                    height = mSource.getHeight();
+                }
 
-                // If created a new bitmap, recycle it
-                if (bitmap != mBitmap) {
-                    bitmap.dispose();
+                // First we'll work out how much the region has to be scaled down, if at all
+                final double scaleRatio = getScaleRatio(width, height);
+
+                final ColorHistogram histogram = mWorkspace != null
+                                                 ? mWorkspace.obtainHistogram(mPrecision)
+                                                 : new ColorHistogram(mPrecision);
+                if (scaleRatio <= 0) {
+                    if (mParallel) {
+                        histogram.addPixelsInParallel(mSource, x, y, width, height);
+                    }
+                    else {
+                        histogram.addPixels(mSource, x, y, width, height);
+                    }
+                }
+                else {
+                    final int scaledWidth = (int) Math.ceil(width * scaleRatio);
+                    final int scaledHeight = (int) Math.ceil(height * scaleRatio);
+
+                    if (mScaleMode == ScaleMode.SCALED_BITMAP
+                            && mSource instanceof PixelSources.BitmapSource) {
+                        // Scale down the region into a new bitmap
+                        final Bitmap scaled = Bitmap.createScaledBitmap(
+                                ((PixelSources.BitmapSource) mSource).getBitmap(), x, y, width, height,
+                                scaledWidth, scaledHeight, false, mPixmapPool);
+                        try {
+                            histogram.addPixels(PixelSource.of(scaled), 0, 0, scaledWidth, scaledHeight);
+                        }
+                        finally {
+                            // We created a new bitmap, so recycle it
+                            scaled.dispose();
+                        }
+                    }
+                    else if (mScaleMode == ScaleMode.AREA_AVERAGE) {
+                        // Read the source directly rather than drawing a scaled down copy of it
+                        histogram.addAveragedPixels(mSource, x, y, width, height,
+                                                    scaledWidth, scaledHeight);
+                    }
+                    else {
+                        histogram.addSampledPixels(mSource, x, y, width, height,
+                                                   scaledWidth, scaledHeight);
+                    }
                 }
 
-                swatches = quantizer.getQuantizedColors();
+                swatches = quantize(histogram);
+            }
+            else if (mHistogram != null) {
+                // The image was decoded straight into a histogram, which just needs quantizing
+                swatches = quantize(mHistogram);
             }
             else if (mSwatches != null) {
                 // Else we're using the provided swatches
                 swatches = mSwatches;
             }
             else {
-                // The constructors enforce either a bitmap or swatches are present.
+                // The constructors enforce either a source, a histogram or swatches are present.
                 throw new AssertionError();
             }
 
@@ -793,6 +1087,57 @@ public final class Palette {
             return p;
         }
 
+        /**
+         * Generate a {@link Palette} which can be brought up to date cheaply when part of the
+         * image changes, see {@link IncrementalPalette}.
+         * <p>
+         * Every pixel of the image, or of its region, is counted, as updates must take away
+         * exactly the pixels which changed: the resize values and {@link #setScaleMode(ScaleMode)}
+         * are ignored. The other settings of this builder are copied, so changing them later has
+         * no effect on the returned palette.
+         *
+         * @throws IllegalStateException if this builder was not created from a {@link Bitmap} or
+         *                               {@link PixelSource}
+         */
+        public @NotNull IncrementalPalette generateIncremental() {
+            if (mSource == null) {
+                throw new IllegalStateException("Only a Bitmap or PixelSource can be updated");
+            }
+            final int x, y, width, height;
+            if (mRegion != null) {
+                x = (int) mRegion.x;
+                y = (int) mRegion.y;
+                width = (int) mRegion.width;
+                height = (int) mRegion.height;
+            }
+            else {
+                x = 0;
+                y = 0;
+                width = mSource.getWidth();
+                height = mSource.getHeight();
+            }
+
+            final ColorHistogram histogram = new ColorHistogram(mPrecision);
+            if (mParallel) {
+                histogram.addPixelsInParallel(mSource, x, y, width, height);
+            }
+            else {
+                histogram.addPixels(mSource, x, y, width, height);
+            }
+
+            final Builder builder = new Builder(histogram);
+            builder.mMaxColors = mMaxColors;
+            builder.mFilters.clear();
+            builder.mFilters.addAll(mFilters);
+            builder.mTargets.clear();
+            builder.mTargets.addAll(mTargets);
+            builder.mQuantizer = mQuantizer;
+            builder.mRefinementIterations = mRefinementIterations;
+            builder.mRefinementThreshold = mRefinementThreshold;
+            builder.mWorkspace = mWorkspace;
+            return new IncrementalPalette(mSource, x, y, width, height, histogram, builder);
+        }
+
         // todo: implement async load
 //        /**
 //         * Generate the {@link Palette} asynchronously. The provided listener's
@@ -826,66 +1171,78 @@ public final class Palette {
 //            }.executeOnExecutor(android.os.AsyncTask.THREAD_POOL_EXECUTOR, mBitmap);
 //        }
 
-        private int[] getPixelsFromBitmap(Bitmap bitmap) {
-            final int bitmapWidth = bitmap.getWidth();
-            final int bitmapHeight = bitmap.getHeight();
-            final int[] pixels = new int[bitmapWidth * bitmapHeight];
-            bitmap.getPixels(pixels, 0, bitmapWidth, 0, 0, bitmapWidth, bitmapHeight);
+        private List<Swatch> quantize(ColorHistogram histogram) {
+            final Filter[] filters =
+                    mFilters.isEmpty() ? null : mFilters.toArray(new Filter[mFilters.size()]);
 
-            if (mRegion == null) {
-                // If we don't have a region, return all of the pixels
-                return pixels;
-            }
-            else {
-                // If we do have a region, lets create a subset array containing only the region's
-                // pixels
-                final int regionWidth = (int) mRegion.width;
-                final int regionHeight = (int) mRegion.height;
-                // pixels contains all of the pixels, so we need to iterate through each row and
-                // copy the regions pixels into a new smaller array
-                final int[] subsetPixels = new int[regionWidth * regionHeight];
-                for (int row = 0; row < regionHeight; row++) {
-                    System.arraycopy(pixels, (int)((int) ((row + mRegion.y) * bitmapWidth) + mRegion.x),
-                                     subsetPixels, row * regionWidth, regionWidth);
-                }
-                return subsetPixels;
+            // Now quantize the histogram
+            final List<Swatch> swatches = mQuantizer.quantize(histogram, mMaxColors, filters, mWorkspace);
+
+            if (mRefinementIterations > 0) {
+                return new KMeansRefinement(histogram, filters)
+                        .refine(swatches, mRefinementIterations, mRefinementThreshold);
             }
+            return swatches;
         }
 
         /**
-         * Scale the bitmap down as needed.
+         * @return the ratio an image of the given size has to be scaled down by to fit the resize
+         * settings, or {@code -1} if it doesn't need scaling.
          */
-        private Bitmap scaleBitmapDown(final Bitmap bitmap) {
+        private double getScaleRatio(final int width, final int height) {
             double scaleRatio = -1;
 
             if (mResizeArea > 0) {
-                final int bitmapArea = bitmap.getWidth() * bitmap.getHeight();
+                final long bitmapArea = (long) width * height;
                 if (bitmapArea > mResizeArea) {
                     scaleRatio = Math.sqrt(mResizeArea / (double) bitmapArea);
                 }
             }
             else if (mResizeMaxDimension > 0) {
-                final int maxDimension = Math.max(bitmap.getWidth(), bitmap.getHeight());
+                final int maxDimension = Math.max(width, height);
                 if (maxDimension > mResizeMaxDimension) {
                     scaleRatio = mResizeMaxDimension / (double) maxDimension;
                 }
             }
 
-            if (scaleRatio <= 0) {
-                // Scaling has been disabled or not needed so just return the Bitmap
-                return bitmap;
-            }
-
-            return Bitmap.createScaledBitmap(bitmap,
-                                             (int) Math.ceil(bitmap.getWidth() * scaleRatio),
-                                             (int) Math.ceil(bitmap.getHeight() * scaleRatio),
-                                             false);
+            return scaleRatio;
         }
     }
 
+    /**
+     * Strategies for scaling a {@link Bitmap} down to the resize value of a {@link Builder}.
+     *
+     * @see Builder#setScaleMode(ScaleMode)
+     */
+    public enum ScaleMode {
+        /**
+         * Draw the bitmap into a new, scaled down bitmap with
+         * {@link Bitmap#createScaledBitmap(Bitmap, int, int, boolean)} and read that back.
+         */
+        SCALED_BITMAP,
+
+        /**
+         * Read an evenly spread grid of pixels straight from the source bitmap. Gives results
+         * similar to {@link #SCALED_BITMAP} without allocating, drawing and disposing an
+         * intermediate bitmap.
+         */
+        SUBSAMPLE,
+
+        /**
+         * Average every block of source pixels into one scaled pixel (a box filter) while
+         * reading the source bitmap. Reads every source pixel, so it is slower than
+         * {@link #SUBSAMPLE}, but the colors are more faithful to the original image and no
+         * intermediate bitmap is created either.
+         */
+        AREA_AVERAGE
+    }
+
     /**
      * A Filter provides a mechanism for exercising fine-grained control over which colors
      * are valid within a resulting {@link Palette}.
+     * <p>
+     * Filters are called for every populated color of the image on every
+     * {@link Builder#generate()}, so they may change their answers from one generate to the next.
      */
     public interface Filter {
         /**
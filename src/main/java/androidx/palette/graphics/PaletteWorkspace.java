@@ -0,0 +1,82 @@
+package androidx.palette.graphics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Scratch memory for generating palettes: the color histogram, the buffers pixels are read into
+ * and the quantizer's color array. Passing the same workspace to every
+ * {@link Palette.Builder#setWorkspace(PaletteWorkspace)} lets steady state generation run without
+ * allocating any of them again.
+ * <p>
+ * A workspace is not thread safe and must only be used by one {@link Palette.Builder#generate()}
+ * at a time. Either confine each workspace to one thread, for instance with
+ * {@link #forCurrentThread()}, or hand them out from a pool of your own.
+ */
+public final class PaletteWorkspace {
+    private static final ThreadLocal<PaletteWorkspace> THREAD_WORKSPACE =
+            ThreadLocal.withInitial(PaletteWorkspace::new);
+
+    // Histograms by precision, created on first use
+    private final ColorHistogram[] mHistograms =
+            new ColorHistogram[ColorHistogram.MAX_PRECISION + 1];
+    private int @Nullable [] mColors;
+    private long @Nullable [] mPopulations;
+
+    /**
+     * Creates a workspace. Its buffers are allocated once, here or on first use.
+     */
+    public PaletteWorkspace() {
+    }
+
+    /**
+     * @return the workspace belonging to the calling thread, which is created on first use and
+     * lives as long as the thread.
+     */
+    public static @NotNull PaletteWorkspace forCurrentThread() {
+        return THREAD_WORKSPACE.get();
+    }
+
+    /**
+     * @return the workspace's histogram of the given precision, with every count reset to zero
+     */
+    ColorHistogram obtainHistogram(int wordWidth) {
+        ColorHistogram histogram = mHistograms[wordWidth];
+        if (histogram == null) {
+            histogram = mHistograms[wordWidth] = new ColorHistogram(wordWidth);
+        }
+        else {
+            histogram.clear();
+        }
+        return histogram;
+    }
+
+    /**
+     * @return an array to hold the distinct colors of {@code histogram}
+     */
+    int[] getColorBuffer(ColorHistogram histogram) {
+        final int size = histogram.getPopulatedBucketCount();
+        if (mColors == null || mColors.length < size) {
+            mColors = new int[bufferSize(size)];
+        }
+        return mColors;
+    }
+
+    /**
+     * @return an array to hold the populations of the distinct colors of {@code histogram}
+     */
+    long[] getPopulationBuffer(ColorHistogram histogram) {
+        final int size = histogram.getPopulatedBucketCount();
+        if (mPopulations == null || mPopulations.length < size) {
+            mPopulations = new long[bufferSize(size)];
+        }
+        return mPopulations;
+    }
+
+    private static int bufferSize(int size) {
+        // Dense histograms can't hold more colors than 5 bit ones, so settle on that at once.
+        // Sparse ones grow to the next power of two, so similar images don't reallocate
+        final int denseSize = 1 << (3 * ColorCutQuantizer.QUANTIZE_WORD_WIDTH);
+        return size <= denseSize ? denseSize : Integer.highestOneBit(size - 1) << 1;
+    }
+}
@@ -0,0 +1,45 @@
+package androidx.palette.graphics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The innermost loop of reading an image: quantizing ARGB pixels and counting them into a dense
+ * histogram.
+ * <p>
+ * This is the Java 8 version. The library jar is a multi-release jar, whose
+ * {@code META-INF/versions/17} holds a version of this class which uses the Vector API on Java 17
+ * and newer, see {@code src/main/java17}. Both versions must keep the same methods.
+ */
+final class PixelQuantizer {
+    private PixelQuantizer() {
+    }
+
+    /**
+     * @return true if pixels are quantized with SIMD instructions
+     */
+    static boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * @return the size of the scratch array {@link #countPixels} needs, which the scalar loop
+     * doesn't use
+     */
+    static int getScratchSize() {
+        return 0;
+    }
+
+    /**
+     * Quantizes {@code length} ARGB pixels, starting at {@code offset}, to {@code wordWidth} bits
+     * per component and adds one to the count of each one's bucket.
+     *
+     * @param scratch array of at least {@link #getScratchSize()} ints, kept by the caller so the
+     *                hot loop doesn't allocate
+     */
+    static void countPixels(int @NotNull [] pixels, int offset, int length, int wordWidth,
+            long @NotNull [] counts, int @NotNull [] scratch) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            counts[ColorCutQuantizer.quantizeFromRgb888(pixels[i], wordWidth)]++;
+        }
+    }
+}
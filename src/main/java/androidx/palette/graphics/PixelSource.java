@@ -0,0 +1,99 @@
+package androidx.palette.graphics;
+
+import android.graphics.Bitmap;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An image which a {@link Palette} can be generated from.
+ * <p>
+ * A {@link Bitmap} is the usual image, see {@link #of(Bitmap)}, but pixels which are already in
+ * memory can be wrapped with {@link #ofArgb(int[], int, int)} or
+ * {@link #of(ByteBuffer, int, int, Layout)}, which doesn't need a libGDX {@code Pixmap} (and so
+ * neither the native libraries) at all.
+ */
+public interface PixelSource {
+    /**
+     * @return the width of the image in pixels
+     */
+    int getWidth();
+
+    /**
+     * @return the height of the image in pixels
+     */
+    int getHeight();
+
+    /**
+     * Returns in pixels[] a copy of a rectangle of the image. Each value is a packed int
+     * representing a non-premultiplied ARGB color in sRGB.
+     *
+     * @param pixels The array to receive the image's colors
+     * @param offset The first index to write into pixels[]
+     * @param stride The number of entries in pixels[] to skip between rows
+     * @param x      The x coordinate of the first pixel to read from the image
+     * @param y      The y coordinate of the first pixel to read from the image
+     * @param width  The number of pixels to read from each row
+     * @param height The number of rows to read
+     * @see Bitmap#getPixels(int[], int, int, int, int, int, int)
+     */
+    void getPixels(int @NotNull [] pixels, int offset, int stride, int x, int y, int width, int height);
+
+    /**
+     * Returns a source reading from {@code bitmap}. The bitmap is not copied, so it must not be
+     * disposed while the source is in use.
+     */
+    static @NotNull PixelSource of(@NotNull Bitmap bitmap) {
+        return new PixelSources.BitmapSource(bitmap);
+    }
+
+    /**
+     * Returns a source reading from {@code pixels}, a row-major array of packed ARGB colors. The
+     * array is not copied, so later changes to it are visible to the source.
+     */
+    static @NotNull PixelSource ofArgb(int @NotNull [] pixels, int width, int height) {
+        return new PixelSources.ArgbArray(pixels, width, height);
+    }
+
+    /**
+     * Returns a source reading tightly packed rows of pixels in the given {@code layout} from
+     * {@code buffer}, starting at its current position. Both heap and direct buffers are supported
+     * and the buffer's position, limit and byte order are left untouched.
+     */
+    static @NotNull PixelSource of(@NotNull ByteBuffer buffer, int width, int height,
+            @NotNull Layout layout) {
+        return of(buffer, width, height, width * layout.bytesPerPixel, layout);
+    }
+
+    /**
+     * Returns a source reading pixels in the given {@code layout} from {@code buffer}, starting at
+     * its current position, where each row starts {@code rowStride} bytes after the previous one.
+     * Both heap and direct buffers are supported and the buffer's position, limit and byte order
+     * are left untouched.
+     */
+    static @NotNull PixelSource of(@NotNull ByteBuffer buffer, int width, int height, int rowStride,
+            @NotNull Layout layout) {
+        return new PixelSources.Buffer(buffer, width, height, rowStride, layout);
+    }
+
+    /**
+     * The order of the color channels of each pixel in a {@link ByteBuffer}, from the lowest
+     * address to the highest.
+     */
+    enum Layout {
+        /** 4 bytes per pixel: red, green, blue, alpha. The layout of a libGDX Pixmap. */
+        RGBA8888(4),
+        /** 4 bytes per pixel: alpha, red, green, blue. */
+        ARGB8888(4),
+        /** 4 bytes per pixel: blue, green, red, alpha. The layout of most native image APIs. */
+        BGRA8888(4),
+        /** 3 bytes per pixel: red, green, blue. Pixels are fully opaque. */
+        RGB888(3);
+
+        final int bytesPerPixel;
+
+        Layout(int bytesPerPixel) {
+            this.bytesPerPixel = bytesPerPixel;
+        }
+    }
+}
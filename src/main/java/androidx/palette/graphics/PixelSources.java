@@ -0,0 +1,235 @@
+package androidx.palette.graphics;
+
+import android.graphics.Bitmap;
+import androidx.core.graphics.ColorUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * {@link PixelSource} implementations for bitmaps and for pixels which are already in memory.
+ */
+final class PixelSources {
+    private PixelSources() {}
+
+    /**
+     * Reads from a {@link Bitmap}, which keeps the android shim free of palette types.
+     */
+    static final class BitmapSource implements PixelSource {
+        private final Bitmap mBitmap;
+
+        BitmapSource(@NotNull Bitmap bitmap) {
+            if (bitmap == null) {
+                throw new IllegalArgumentException("bitmap must not be null");
+            }
+            mBitmap = bitmap;
+        }
+
+        /**
+         * @return the bitmap this source reads from, which {@link Palette.Builder} can scale down
+         * natively.
+         */
+        @NotNull Bitmap getBitmap() {
+            return mBitmap;
+        }
+
+        @Override
+        public int getWidth() {
+            return mBitmap.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return mBitmap.getHeight();
+        }
+
+        @Override
+        public void getPixels(int @NotNull [] pixels, int offset, int stride, int x, int y, int width, int height) {
+            mBitmap.getPixels(pixels, offset, stride, x, y, width, height);
+        }
+    }
+
+    /**
+     * Reads from a row-major array of ARGB colors.
+     */
+    static final class ArgbArray implements PixelSource {
+        private final int[] mPixels;
+        private final int mWidth;
+        private final int mHeight;
+
+        ArgbArray(int @NotNull [] pixels, int width, int height) {
+            checkDimensions(width, height);
+            if (pixels.length < (long) width * height) {
+                throw new IllegalArgumentException("pixels must hold at least width * height colors");
+            }
+            mPixels = pixels;
+            mWidth = width;
+            mHeight = height;
+        }
+
+        @Override
+        public int getWidth() {
+            return mWidth;
+        }
+
+        @Override
+        public int getHeight() {
+            return mHeight;
+        }
+
+        @Override
+        public void getPixels(int @NotNull [] pixels, int offset, int stride, int x, int y, int width, int height) {
+            checkPixelsAccess(this, x, y, width, height, offset, stride, pixels);
+            for (int row = 0; row < height; row++) {
+                System.arraycopy(mPixels, (y + row) * mWidth + x, pixels, offset + row * stride, width);
+            }
+        }
+    }
+
+    /**
+     * Reads from a heap or direct {@link ByteBuffer} holding pixels in a known {@link PixelSource.Layout}.
+     */
+    static final class Buffer implements PixelSource {
+        private final ByteBuffer mBuffer;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mRowStride;
+        private final PixelSource.Layout mLayout;
+
+        Buffer(@NotNull ByteBuffer buffer, int width, int height, int rowStride,
+                PixelSource.@NotNull Layout layout) {
+            checkDimensions(width, height);
+            if (rowStride < width * layout.bytesPerPixel) {
+                throw new IllegalArgumentException("rowStride must be >= width * bytes per pixel");
+            }
+            final long size = (long) rowStride * (height - 1) + (long) width * layout.bytesPerPixel;
+            if (buffer.remaining() < size) {
+                throw new IllegalArgumentException("buffer is too small for the given dimensions");
+            }
+            // Keep our own view so the caller's position, limit and order can't affect reads
+            mBuffer = buffer.slice();
+            mWidth = width;
+            mHeight = height;
+            mRowStride = rowStride;
+            mLayout = layout;
+        }
+
+        @Override
+        public int getWidth() {
+            return mWidth;
+        }
+
+        @Override
+        public int getHeight() {
+            return mHeight;
+        }
+
+        @Override
+        public void getPixels(int @NotNull [] pixels, int offset, int stride, int x, int y, int width, int height) {
+            checkPixelsAccess(this, x, y, width, height, offset, stride, pixels);
+            if (width == 0 || height == 0) {
+                return;
+            }
+            // Each read works on its own duplicate, so concurrent reads don't interfere
+            final ByteBuffer data = mBuffer.duplicate();
+            if (mLayout == PixelSource.Layout.RGB888) {
+                readRgb888(data, pixels, offset, stride, x, y, width, height);
+            }
+            else {
+                readPacked32(data, pixels, offset, stride, x, y, width, height);
+            }
+        }
+
+        private void readPacked32(ByteBuffer data, int[] pixels, int offset, int stride,
+                int x, int y, int width, int height) {
+            // ARGB bytes read as a big endian int, and BGRA bytes read as a little endian int are
+            // already ARGB. RGBA bytes read as a big endian int just need rotating.
+            data.order(mLayout == PixelSource.Layout.BGRA8888
+                       ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            final boolean rgba = mLayout == PixelSource.Layout.RGBA8888;
+            // When rows are int aligned a single int view can serve every row
+            final IntBuffer ints = mRowStride % 4 == 0 ? data.asIntBuffer() : null;
+
+            for (int row = 0; row < height; row++) {
+                final int dstIndex = offset + row * stride;
+                final IntBuffer scanline;
+                if (ints != null) {
+                    scanline = ints;
+                    scanline.position((y + row) * (mRowStride / 4) + x);
+                }
+                else {
+                    data.position((y + row) * mRowStride + x * 4);
+                    scanline = data.asIntBuffer();
+                }
+                scanline.get(pixels, dstIndex, width);
+                if (rgba) {
+                    for (int i = dstIndex, end = dstIndex + width; i < end; i++) {
+                        pixels[i] = ColorUtils.rgbaToArgb(pixels[i]);
+                    }
+                }
+            }
+        }
+
+        private void readRgb888(ByteBuffer data, int[] pixels, int offset, int stride,
+                int x, int y, int width, int height) {
+            final byte[] scanline = new byte[width * 3];
+            for (int row = 0; row < height; row++) {
+                data.position((y + row) * mRowStride + x * 3);
+                data.get(scanline, 0, scanline.length);
+                for (int col = 0, i = 0, dstIndex = offset + row * stride; col < width; col++, i += 3) {
+                    pixels[dstIndex + col] = 0xFF000000
+                            | (scanline[i] & 0xFF) << 16
+                            | (scanline[i + 1] & 0xFF) << 8
+                            | (scanline[i + 2] & 0xFF);
+                }
+            }
+        }
+    }
+
+    static void checkDimensions(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width and height must be > 0");
+        }
+    }
+
+    /**
+     * Checks the arguments of {@link PixelSource#getPixels}, the same way
+     * {@link android.graphics.Bitmap} does.
+     */
+    static void checkPixelsAccess(PixelSource source, int x, int y, int width, int height,
+            int offset, int stride, int[] pixels) {
+        if (x < 0) {
+            throw new IllegalArgumentException("x must be >= 0");
+        }
+        if (y < 0) {
+            throw new IllegalArgumentException("y must be >= 0");
+        }
+        if (width < 0) {
+            throw new IllegalArgumentException("width must be >= 0");
+        }
+        if (height < 0) {
+            throw new IllegalArgumentException("height must be >= 0");
+        }
+        if (x + width > source.getWidth()) {
+            throw new IllegalArgumentException("x + width must be <= source width");
+        }
+        if (y + height > source.getHeight()) {
+            throw new IllegalArgumentException("y + height must be <= source height");
+        }
+        if (width == 0 || height == 0) {
+            return;
+        }
+        if (Math.abs(stride) < width) {
+            throw new IllegalArgumentException("abs(stride) must be >= width");
+        }
+        int lastScanline = offset + (height - 1) * stride;
+        int length = pixels.length;
+        if (offset < 0 || (offset + width > length)
+                || lastScanline < 0
+                || (lastScanline + width > length)) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+    }
+}
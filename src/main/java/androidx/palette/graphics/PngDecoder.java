@@ -0,0 +1,425 @@
+package androidx.palette.graphics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Streaming PNG decoder which feeds the image straight into a {@link ColorHistogram}.
+ * <p>
+ * Scanlines are inflated and unfiltered one at a time, so besides the histogram only two
+ * scanlines and one row of ARGB colors are ever held in memory, however large the image is.
+ * All standard color types and bit depths are supported, as are Adam7 interlaced images.
+ * Ancillary chunks, including transparency and gamma information, are skipped since the
+ * histogram only counts RGB colors. Chunk CRCs are not verified.
+ */
+final class PngDecoder {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final int CHUNK_IHDR = 'I' << 24 | 'H' << 16 | 'D' << 8 | 'R';
+    private static final int CHUNK_PLTE = 'P' << 24 | 'L' << 16 | 'T' << 8 | 'E';
+    private static final int CHUNK_IDAT = 'I' << 24 | 'D' << 16 | 'A' << 8 | 'T';
+    private static final int CHUNK_IEND = 'I' << 24 | 'E' << 16 | 'N' << 8 | 'D';
+
+    private static final int COLOR_GRAY = 0;
+    private static final int COLOR_RGB = 2;
+    private static final int COLOR_PALETTE = 3;
+    private static final int COLOR_GRAY_ALPHA = 4;
+    private static final int COLOR_RGBA = 6;
+
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+    private static final int FILTER_AVERAGE = 3;
+    private static final int FILTER_PAETH = 4;
+
+    // Adam7 passes: first column and row, and the distance between columns and rows
+    private static final int[] ADAM7_X = {0, 4, 0, 2, 0, 1, 0};
+    private static final int[] ADAM7_Y = {0, 0, 4, 0, 2, 0, 1};
+    private static final int[] ADAM7_DX = {8, 8, 4, 4, 2, 2, 1};
+    private static final int[] ADAM7_DY = {8, 8, 8, 4, 4, 2, 2};
+
+    private static final int INFLATE_BUFFER_SIZE = 1 << 13;
+
+    private final DataInputStream mIn;
+    private final int mRowStep;
+    private final int mColumnStep;
+
+    private int mWidth;
+    private int mHeight;
+    private int mBitDepth;
+    private int mColorType;
+    private int mChannels;
+    private boolean mInterlaced;
+    private int @NotNull [] mPalette = new int[0];
+
+    // Bytes of the current IDAT chunk which haven't been read yet
+    private int mIdatRemaining;
+
+    private PngDecoder(InputStream in, int rowStep, int columnStep) {
+        mIn = new DataInputStream(in);
+        mRowStep = rowStep;
+        mColumnStep = columnStep;
+    }
+
+    /**
+     * Decodes the PNG image read from {@code in} and adds its pixels to {@code histogram}. Only
+     * every {@code rowStep}th row and every {@code columnStep}th column are added, starting with
+     * the first. The stream is read up to the end of the image data but not closed.
+     *
+     * @throws IOException if the stream can't be read or is not a valid PNG image
+     */
+    static void decode(@NotNull InputStream in, int rowStep, int columnStep,
+            @NotNull ColorHistogram histogram) throws IOException {
+        if (rowStep <= 0 || columnStep <= 0) {
+            throw new IllegalArgumentException("rowStep and columnStep must be > 0");
+        }
+        new PngDecoder(in, rowStep, columnStep).decode(histogram);
+    }
+
+    private void decode(ColorHistogram histogram) throws IOException {
+        final byte[] signature = new byte[SIGNATURE.length];
+        mIn.readFully(signature);
+        if (!Arrays.equals(signature, SIGNATURE)) {
+            throw new IOException("Not a PNG image");
+        }
+
+        // Read the chunks leading up to the image data
+        boolean headerRead = false;
+        while (true) {
+            final int length = mIn.readInt();
+            final int type = mIn.readInt();
+            if (length < 0) {
+                throw new IOException("Invalid PNG chunk length " + length);
+            }
+            if (type == CHUNK_IHDR) {
+                readHeader(length);
+                headerRead = true;
+            }
+            else if (!headerRead) {
+                throw new IOException("PNG image doesn't start with a header chunk");
+            }
+            else if (type == CHUNK_PLTE) {
+                readPalette(length);
+            }
+            else if (type == CHUNK_IDAT) {
+                mIdatRemaining = length;
+                break;
+            }
+            else if (type == CHUNK_IEND) {
+                throw new IOException("PNG image has no image data");
+            }
+            else {
+                skipFully(length);
+            }
+            // Skip the CRC
+            skipFully(4);
+        }
+        if (mColorType == COLOR_PALETTE && mPalette.length == 0) {
+            throw new IOException("Indexed PNG image has no palette");
+        }
+
+        final Inflater inflater = new Inflater();
+        try {
+            final DataInputStream data = new DataInputStream(
+                    new InflaterInputStream(new IdatInputStream(), inflater, INFLATE_BUFFER_SIZE));
+            if (mInterlaced) {
+                for (int pass = 0; pass < ADAM7_X.length; pass++) {
+                    decodePass(data, histogram, ADAM7_X[pass], ADAM7_Y[pass],
+                               ADAM7_DX[pass], ADAM7_DY[pass]);
+                }
+            }
+            else {
+                decodePass(data, histogram, 0, 0, 1, 1);
+            }
+        }
+        catch (EOFException e) {
+            throw new IOException("PNG image data is truncated", e);
+        }
+        finally {
+            // Release the native zlib memory right away rather than when finalized
+            inflater.end();
+        }
+    }
+
+    private void readHeader(int length) throws IOException {
+        if (length != 13) {
+            throw new IOException("Invalid PNG header length " + length);
+        }
+        mWidth = mIn.readInt();
+        mHeight = mIn.readInt();
+        mBitDepth = mIn.readUnsignedByte();
+        mColorType = mIn.readUnsignedByte();
+        final int compression = mIn.readUnsignedByte();
+        final int filter = mIn.readUnsignedByte();
+        final int interlace = mIn.readUnsignedByte();
+
+        if (mWidth <= 0 || mHeight <= 0) {
+            throw new IOException("Invalid PNG dimensions " + mWidth + "x" + mHeight);
+        }
+        switch (mColorType) {
+            case COLOR_GRAY:
+                mChannels = 1;
+                checkBitDepth(1, 2, 4, 8, 16);
+                break;
+            case COLOR_RGB:
+                mChannels = 3;
+                checkBitDepth(8, 16);
+                break;
+            case COLOR_PALETTE:
+                mChannels = 1;
+                checkBitDepth(1, 2, 4, 8);
+                break;
+            case COLOR_GRAY_ALPHA:
+                mChannels = 2;
+                checkBitDepth(8, 16);
+                break;
+            case COLOR_RGBA:
+                mChannels = 4;
+                checkBitDepth(8, 16);
+                break;
+            default:
+                throw new IOException("Unsupported PNG color type " + mColorType);
+        }
+        if (compression != 0 || filter != 0 || interlace > 1) {
+            throw new IOException("Unsupported PNG compression, filter or interlace method");
+        }
+        mInterlaced = interlace == 1;
+    }
+
+    private void checkBitDepth(int... allowed) throws IOException {
+        for (int depth : allowed) {
+            if (mBitDepth == depth) {
+                return;
+            }
+        }
+        throw new IOException("Invalid PNG bit depth " + mBitDepth + " for color type " + mColorType);
+    }
+
+    private void readPalette(int length) throws IOException {
+        if (length % 3 != 0 || length > 256 * 3) {
+            throw new IOException("Invalid PNG palette length " + length);
+        }
+        // Out of range indices are invalid, show them as black rather than failing
+        final int[] palette = new int[256];
+        Arrays.fill(palette, 0xFF000000);
+        for (int i = 0; i < length / 3; i++) {
+            palette[i] = 0xFF000000 | mIn.readUnsignedByte() << 16
+                    | mIn.readUnsignedByte() << 8 | mIn.readUnsignedByte();
+        }
+        mPalette = palette;
+    }
+
+    /**
+     * Decodes the scanlines of one pass of the image: the sub-image of every {@code dx}th pixel of
+     * every {@code dy}th row, starting at ({@code x0}, {@code y0}). Non interlaced images consist
+     * of a single pass covering every pixel.
+     */
+    private void decodePass(DataInputStream data, ColorHistogram histogram,
+            int x0, int y0, int dx, int dy) throws IOException {
+        final int passWidth = (mWidth - x0 + dx - 1) / dx;
+        final int passHeight = (mHeight - y0 + dy - 1) / dy;
+        if (passWidth <= 0 || passHeight <= 0) {
+            // Small interlaced images can have empty passes, which have no scanlines at all
+            return;
+        }
+
+        // The indices in the pass of the pixels in the sampled columns
+        int sampledCount = 0;
+        final int[] sampled = new int[passWidth];
+        for (int i = 0; i < passWidth; i++) {
+            if ((x0 + i * dx) % mColumnStep == 0) {
+                sampled[sampledCount++] = i;
+            }
+        }
+
+        final int bitsPerPixel = mChannels * mBitDepth;
+        final int lineLength = (int) (((long) passWidth * bitsPerPixel + 7) / 8);
+        // Filters work on bytes, comparing each with the matching byte of the previous pixel
+        final int filterStride = Math.max(1, bitsPerPixel / 8);
+        byte[] line = new byte[lineLength];
+        byte[] previous = new byte[lineLength];
+        final int[] row = new int[sampledCount];
+
+        for (int j = 0; j < passHeight; j++) {
+            final int filter = data.readUnsignedByte();
+            data.readFully(line);
+            unfilter(filter, line, previous, filterStride);
+
+            if ((y0 + j * dy) % mRowStep == 0 && sampledCount > 0) {
+                convertLine(line, sampled, sampledCount, row);
+                histogram.addPixels(row, 0, sampledCount);
+            }
+
+            final byte[] swap = previous;
+            previous = line;
+            line = swap;
+        }
+    }
+
+    private static void unfilter(int filter, byte[] line, byte[] previous, int stride)
+            throws IOException {
+        final int length = line.length;
+        switch (filter) {
+            case FILTER_NONE:
+                break;
+            case FILTER_SUB:
+                for (int i = stride; i < length; i++) {
+                    line[i] += line[i - stride];
+                }
+                break;
+            case FILTER_UP:
+                for (int i = 0; i < length; i++) {
+                    line[i] += previous[i];
+                }
+                break;
+            case FILTER_AVERAGE:
+                for (int i = 0; i < stride; i++) {
+                    line[i] += (previous[i] & 0xFF) >> 1;
+                }
+                for (int i = stride; i < length; i++) {
+                    line[i] += ((line[i - stride] & 0xFF) + (previous[i] & 0xFF)) >> 1;
+                }
+                break;
+            case FILTER_PAETH:
+                for (int i = 0; i < stride; i++) {
+                    line[i] += previous[i];
+                }
+                for (int i = stride; i < length; i++) {
+                    line[i] += paeth(line[i - stride] & 0xFF, previous[i] & 0xFF,
+                                     previous[i - stride] & 0xFF);
+                }
+                break;
+            default:
+                throw new IOException("Invalid PNG filter type " + filter);
+        }
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        final int p = left + up - upLeft;
+        final int pLeft = Math.abs(p - left);
+        final int pUp = Math.abs(p - up);
+        final int pUpLeft = Math.abs(p - upLeft);
+        if (pLeft <= pUp && pLeft <= pUpLeft) {
+            return left;
+        }
+        return pUp <= pUpLeft ? up : upLeft;
+    }
+
+    /**
+     * Converts the pixels at the given {@code sampled} indices of an unfiltered scanline to ARGB.
+     * 16-bit samples are reduced to their most significant byte.
+     */
+    private void convertLine(byte[] line, int[] sampled, int count, int[] row) {
+        if (mBitDepth < 8) {
+            // Gray or palette indices, packed several to a byte with the leftmost pixel in the
+            // high bits
+            final int depth = mBitDepth;
+            final int mask = (1 << depth) - 1;
+            final boolean palette = mColorType == COLOR_PALETTE;
+            for (int k = 0; k < count; k++) {
+                final int bit = sampled[k] * depth;
+                final int value = (line[bit >> 3] >> (8 - depth - (bit & 7))) & mask;
+                row[k] = palette ? mPalette[value] : 0xFF000000 | (value * 255 / mask) * 0x010101;
+            }
+            return;
+        }
+
+        final int bytesPerSample = mBitDepth / 8;
+        final int bytesPerPixel = mChannels * bytesPerSample;
+        switch (mColorType) {
+            case COLOR_GRAY:
+            case COLOR_GRAY_ALPHA:
+                for (int k = 0; k < count; k++) {
+                    final int i = sampled[k] * bytesPerPixel;
+                    final int alpha = mColorType == COLOR_GRAY_ALPHA
+                                      ? line[i + bytesPerSample] & 0xFF : 0xFF;
+                    row[k] = alpha << 24 | (line[i] & 0xFF) * 0x010101;
+                }
+                break;
+            case COLOR_PALETTE:
+                for (int k = 0; k < count; k++) {
+                    row[k] = mPalette[line[sampled[k]] & 0xFF];
+                }
+                break;
+            case COLOR_RGB:
+            case COLOR_RGBA:
+                for (int k = 0; k < count; k++) {
+                    final int i = sampled[k] * bytesPerPixel;
+                    final int alpha = mColorType == COLOR_RGBA
+                                      ? line[i + 3 * bytesPerSample] & 0xFF : 0xFF;
+                    row[k] = alpha << 24
+                            | (line[i] & 0xFF) << 16
+                            | (line[i + bytesPerSample] & 0xFF) << 8
+                            | (line[i + 2 * bytesPerSample] & 0xFF);
+                }
+                break;
+        }
+    }
+
+    private void skipFully(long count) throws IOException {
+        while (count > 0) {
+            final long skipped = mIn.skip(count);
+            if (skipped > 0) {
+                count -= skipped;
+            }
+            else {
+                // skip() may give up early without being at the end of the stream
+                mIn.readByte();
+                count--;
+            }
+        }
+    }
+
+    /**
+     * The zlib stream spread over consecutive IDAT chunks, as one stream.
+     */
+    private final class IdatInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte @NotNull [] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (mIdatRemaining < 0) {
+                return -1;
+            }
+            while (mIdatRemaining == 0) {
+                if (!nextIdatChunk()) {
+                    return -1;
+                }
+            }
+            final int read = mIn.read(b, off, Math.min(len, mIdatRemaining));
+            if (read < 0) {
+                throw new EOFException("PNG image data is truncated");
+            }
+            mIdatRemaining -= read;
+            return read;
+        }
+
+        private boolean nextIdatChunk() throws IOException {
+            // Skip the CRC of the finished chunk, then read the next chunk's header
+            skipFully(4);
+            final int length = mIn.readInt();
+            final int type = mIn.readInt();
+            if (type != CHUNK_IDAT || length < 0) {
+                // The image data is over, remember that rather than reading any further
+                mIdatRemaining = -1;
+                return false;
+            }
+            mIdatRemaining = length;
+            return true;
+        }
+    }
+}
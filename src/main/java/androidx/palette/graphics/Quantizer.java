@@ -0,0 +1,100 @@
+package androidx.palette.graphics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Reduces the colors of an image to at most a given number of {@link Palette.Swatch}es, which a
+ * {@link Palette} then picks its targets from.
+ * <p>
+ * {@link Palette.Builder#generate()} always reads the image's pixels into a
+ * {@link ColorHistogram} first, whatever the quantizer, so implementations work on the population
+ * of each color rather than on individual pixels. The built-in quantizers are
+ * {@link #colorCut()}, which is the default, {@link #wu()} and {@link #octree()}; set another one with
+ * {@link Palette.Builder#setQuantizer(Quantizer)}.
+ * <p>
+ * Implementations must be thread safe, as one instance may be shared by builders generating
+ * palettes concurrently.
+ */
+public interface Quantizer {
+    /**
+     * Reduces the colors of {@code histogram} to at most {@code maxColors} swatches.
+     *
+     * @param histogram the population of each color of the image. It must not be modified.
+     * @param maxColors the maximum number of swatches to return.
+     * @param filters   the filters which every returned swatch must be allowed by, or
+     *                  {@code null} to allow any color.
+     * @return the swatches, in no particular order.
+     */
+    @NotNull List<Palette.Swatch> quantize(@NotNull ColorHistogram histogram, int maxColors,
+            Palette.Filter @Nullable [] filters);
+
+    /**
+     * Same as {@link #quantize(ColorHistogram, int, Palette.Filter[])}, but scratch memory may be
+     * taken from {@code workspace} instead of being allocated. This is what
+     * {@link Palette.Builder#generate()} calls, with the workspace set by
+     * {@link Palette.Builder#setWorkspace(PaletteWorkspace)}. Quantizers which wrap another one
+     * should pass the workspace on. Ignores the workspace by default.
+     *
+     * @param workspace the workspace of the generating builder, or {@code null} if it has none.
+     */
+    default @NotNull List<Palette.Swatch> quantize(@NotNull ColorHistogram histogram, int maxColors,
+            Palette.Filter @Nullable [] filters, @Nullable PaletteWorkspace workspace) {
+        return quantize(histogram, maxColors, filters);
+    }
+
+    /**
+     * Returns the original {@link Palette} quantizer, a median-cut variant which repeatedly splits
+     * the color box with the largest volume at its population median. It favours distinct
+     * colors over representative ones.
+     */
+    static @NotNull Quantizer colorCut() {
+        return Quantizers.COLOR_CUT;
+    }
+
+    /**
+     * Returns a {@link #colorCut()} quantizer which lets the number of swatches adapt to the
+     * image: it stops splitting color boxes once the largest one is smaller than a cube with
+     * sides {@code minBoxSize} RGB888 levels long, even if fewer than {@code maxColors} swatches
+     * have been found. Images made of a few well separated colors, such as flat UI art, then get
+     * about one swatch per color instead of being split into shades of them, which also saves
+     * work in {@link Palette.Builder#generate()}.
+     *
+     * @param minBoxSize the side length below which boxes aren't split, as a distance in RGB888
+     *                   units, such as 32 for the size of 8 shades of each component, or
+     *                   {@code 0} to always split up to the maximum.
+     */
+    static @NotNull Quantizer colorCut(float minBoxSize) {
+        return new Quantizers.ColorCut(minBoxSize);
+    }
+
+    /**
+     * Returns Xiaolin Wu's quantizer, which repeatedly cuts the color box with the largest
+     * variance where it reduces the variance the most. Cumulative moment tables make each box
+     * statistic take constant time, so its cost hardly grows with the number of colors, and it
+     * gives more representative colors when many are requested.
+     */
+    static @NotNull Quantizer wu() {
+        return Quantizers.WU;
+    }
+
+    /**
+     * Returns an octree quantizer with a budget of {@link OctreeQuantizer#DEFAULT_MAX_NODES}
+     * nodes. It is quick and its memory use is fixed, but it is less accurate than the other
+     * quantizers, as it divides the color cube along fixed bit boundaries. Use
+     * {@link OctreeQuantizer} directly to feed pixels in as they are decoded.
+     */
+    static @NotNull Quantizer octree() {
+        return Quantizers.OCTREE;
+    }
+
+    /**
+     * Returns an octree quantizer which holds at most {@code maxNodes} nodes, see
+     * {@link OctreeQuantizer#OctreeQuantizer(int)}.
+     */
+    static @NotNull Quantizer octree(int maxNodes) {
+        return new Quantizers.Octree(maxNodes);
+    }
+}
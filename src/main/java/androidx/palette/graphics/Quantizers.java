@@ -0,0 +1,81 @@
+package androidx.palette.graphics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * The built-in {@link Quantizer}s.
+ */
+final class Quantizers {
+    static final Quantizer COLOR_CUT = new ColorCut(0);
+    static final Quantizer WU = new Wu();
+    static final Quantizer OCTREE = new Octree(OctreeQuantizer.DEFAULT_MAX_NODES);
+
+    private Quantizers() {
+    }
+
+    static final class ColorCut implements Quantizer {
+        private final float mMinBoxSize;
+
+        ColorCut(float minBoxSize) {
+            if (!(minBoxSize >= 0) || Float.isInfinite(minBoxSize)) {
+                throw new IllegalArgumentException("minBoxSize must be a finite number >= 0");
+            }
+            mMinBoxSize = minBoxSize;
+        }
+
+        @Override
+        public @NotNull List<Palette.Swatch> quantize(@NotNull ColorHistogram histogram,
+                int maxColors, Palette.Filter @Nullable [] filters) {
+            return quantize(histogram, maxColors, filters, null);
+        }
+
+        @Override
+        public @NotNull List<Palette.Swatch> quantize(@NotNull ColorHistogram histogram,
+                int maxColors, Palette.Filter @Nullable [] filters,
+                @Nullable PaletteWorkspace workspace) {
+            // Reuse the workspace's buffers for the distinct colors and their populations
+            return new ColorCutQuantizer(histogram, maxColors, filters, mMinBoxSize,
+                                         workspace != null ? workspace.getColorBuffer(histogram) : null,
+                                         workspace != null ? workspace.getPopulationBuffer(histogram) : null)
+                    .getQuantizedColors();
+        }
+    }
+
+    static final class Wu implements Quantizer {
+        @Override
+        public @NotNull List<Palette.Swatch> quantize(@NotNull ColorHistogram histogram,
+                int maxColors, Palette.Filter @Nullable [] filters) {
+            return new WuQuantizer(histogram, maxColors, filters).getQuantizedColors();
+        }
+    }
+
+    static final class Octree implements Quantizer {
+        private final int mMaxNodes;
+
+        Octree(int maxNodes) {
+            if (maxNodes < OctreeQuantizer.MIN_NODES) {
+                throw new IllegalArgumentException(
+                        "maxNodes must be at least " + OctreeQuantizer.MIN_NODES);
+            }
+            mMaxNodes = maxNodes;
+        }
+
+        @Override
+        public @NotNull List<Palette.Swatch> quantize(@NotNull ColorHistogram histogram,
+                int maxColors, Palette.Filter @Nullable [] filters) {
+            final OctreeQuantizer tree = new OctreeQuantizer(mMaxNodes);
+            final int[] buckets = new int[histogram.getPopulatedBucketCount()];
+            final int populated = histogram.getPopulatedBuckets(buckets);
+            final IgnoredColors ignoredColors = IgnoredColors.get(filters, histogram.getPrecision());
+            for (int i = 0; i < populated; i++) {
+                if (!IgnoredColors.isIgnored(ignoredColors, buckets[i])) {
+                    tree.addColor(histogram.getRgb(buckets[i]), histogram.getCount(buckets[i]));
+                }
+            }
+            return tree.getSwatches(maxColors, filters);
+        }
+    }
+}
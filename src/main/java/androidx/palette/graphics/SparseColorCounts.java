@@ -0,0 +1,181 @@
+package androidx.palette.graphics;
+
+import java.util.Arrays;
+
+/**
+ * Population counts of color buckets, for histograms with too many buckets for a dense array to
+ * pay off. An open addressed hash table with linear probing over primitive arrays, so counting a
+ * pixel neither allocates nor boxes. Only the buckets which have been counted take up space; the
+ * table doubles whenever it gets half full.
+ * <p>
+ * Populations can be taken away again. A bucket whose population drops to zero keeps its slot,
+ * as removing it would break the probe sequences of others, until the table is next rebuilt.
+ */
+final class SparseColorCounts {
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private int[] mKeys;
+    private long[] mValues;
+    private int mMask;
+    // Shift which keeps the top log2(capacity) bits of a hash
+    private int mShift;
+    // Number of buckets with a population above zero
+    private int mSize;
+    // Number of slots holding a bucket, including those whose population dropped to zero
+    private int mOccupied;
+
+    SparseColorCounts() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds {@code count} to the population of {@code bucket}, which must not be negative. A
+     * negative {@code count} takes pixels away, and must not take more than were added.
+     */
+    void add(int bucket, long count) {
+        if (count == 0) {
+            return;
+        }
+        int slot = slotOf(bucket);
+        int key;
+        while ((key = mKeys[slot]) != EMPTY) {
+            if (key == bucket) {
+                final long value = mValues[slot];
+                mValues[slot] = value + count;
+                if (value == 0) {
+                    mSize++;
+                }
+                else if (value + count == 0) {
+                    mSize--;
+                }
+                return;
+            }
+            slot = (slot + 1) & mMask;
+        }
+        mKeys[slot] = bucket;
+        mValues[slot] = count;
+        mSize++;
+        if (++mOccupied > mKeys.length >> 1) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Adds the populations of every bucket of {@code other}, straight from its slots.
+     */
+    void addAll(SparseColorCounts other) {
+        final int[] keys = other.mKeys;
+        final long[] values = other.mValues;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && values[i] > 0) {
+                add(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the population of {@code bucket}
+     */
+    long get(int bucket) {
+        int slot = slotOf(bucket);
+        int key;
+        while ((key = mKeys[slot]) != EMPTY) {
+            if (key == bucket) {
+                return mValues[slot];
+            }
+            slot = (slot + 1) & mMask;
+        }
+        return 0;
+    }
+
+    /**
+     * @return the number of buckets with a population above zero
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Copies every bucket with a population above zero into {@code buckets}, in ascending order.
+     *
+     * @return the number of buckets copied
+     */
+    int getBuckets(int[] buckets) {
+        final int[] keys = mKeys;
+        final long[] values = mValues;
+        int count = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY && values[i] > 0) {
+                buckets[count++] = keys[i];
+            }
+        }
+        Arrays.sort(buckets, 0, count);
+        return count;
+    }
+
+    /**
+     * Removes every bucket. The table keeps its capacity, so refilling it with a similar number
+     * of buckets doesn't grow it again.
+     */
+    void clear() {
+        Arrays.fill(mKeys, EMPTY);
+        mSize = 0;
+        mOccupied = 0;
+    }
+
+    /**
+     * Multiplies every population by {@code factor}, rounding to the nearest whole count, and
+     * removes the buckets whose population rounds to zero.
+     */
+    void scale(double factor) {
+        final int[] keys = mKeys;
+        final long[] values = mValues;
+        allocate(keys.length);
+        mSize = 0;
+        mOccupied = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                final long value = Math.round(values[i] * factor);
+                if (value > 0) {
+                    add(keys[i], value);
+                }
+            }
+        }
+    }
+
+    private int slotOf(int bucket) {
+        // Fibonacci hashing spreads neighbouring buckets over the table
+        return (bucket * 0x9E3779B9) >>> mShift;
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new int[capacity];
+        mValues = new long[capacity];
+        mMask = capacity - 1;
+        mShift = 32 - Integer.numberOfTrailingZeros(capacity);
+        Arrays.fill(mKeys, EMPTY);
+    }
+
+    /**
+     * Moves the populated buckets into a new table, leaving out those whose population dropped to
+     * zero. The table doubles, unless enough buckets are left out for it to stay the same size.
+     */
+    private void rebuild() {
+        final int[] keys = mKeys;
+        final long[] values = mValues;
+        allocate(mSize > keys.length >> 2 ? keys.length << 1 : keys.length);
+        mOccupied = mSize;
+        for (int i = 0; i < keys.length; i++) {
+            final int key = keys[i];
+            if (key != EMPTY && values[i] > 0) {
+                int slot = slotOf(key);
+                while (mKeys[slot] != EMPTY) {
+                    slot = (slot + 1) & mMask;
+                }
+                mKeys[slot] = key;
+                mValues[slot] = values[i];
+            }
+        }
+    }
+}
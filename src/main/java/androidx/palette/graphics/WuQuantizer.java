@@ -0,0 +1,460 @@
+package androidx.palette.graphics;
+
+import static androidx.palette.graphics.ColorCutQuantizer.approximateToRgb888;
+import static androidx.palette.graphics.ColorCutQuantizer.quantizedBlue;
+import static androidx.palette.graphics.ColorCutQuantizer.quantizedGreen;
+import static androidx.palette.graphics.ColorCutQuantizer.quantizedRed;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A color quantizer based on Xiaolin Wu's "Efficient Statistical Computations for Optimal Color
+ * Quantization" (Graphics Gems II, 1991), over the same quantized RGB cube as
+ * {@link ColorCutQuantizer}.
+ * <p>
+ * The histogram is turned into cumulative 3D tables of the population, the per-channel sums and
+ * the sum of squares of its colors. Any box's population, mean and variance then take a constant
+ * number of table lookups. The box with the largest variance is repeatedly cut in two, at the
+ * point along the axis which reduces the variance the most. Unlike {@link ColorCutQuantizer},
+ * which splits the largest box at its population median, this minimizes the total squared
+ * error, which gives more representative colors at high color counts.
+ * <p>
+ * The tables have a cell per color for histograms of up to {@value #MAX_CELL_WIDTH} bits per
+ * component. Finer histograms share each cell between neighbouring colors, which keeps the
+ * tables small, while the moments still sum the colors at full precision.
+ */
+final class WuQuantizer {
+    private static final int MAX_CELL_WIDTH = 5;
+
+    private static final int DIRECTION_RED = 0;
+    private static final int DIRECTION_GREEN = 1;
+    private static final int DIRECTION_BLUE = 2;
+
+    final List<Palette.Swatch> mQuantizedColors;
+    final Palette.Filter @Nullable [] mFilters;
+
+    private final int mWordWidth;
+    // Shift from a color component to its cell along that axis
+    private final int mCellShift;
+    // The tables have an extra leading zero plane in each dimension, so box bounds are exclusive
+    // lower and inclusive upper indices in [0, mSideSize)
+    private final int mSideSize;
+
+    // Cumulative moments: population, sums of each channel and sum of squared channels
+    private long[] mWeights;
+    private long[] mMomentsRed;
+    private long[] mMomentsGreen;
+    private long[] mMomentsBlue;
+    private double[] mMoments;
+
+    // The boxes, as parallel arrays indexed by box number
+    private int[] mRed0, mRed1, mGreen0, mGreen1, mBlue0, mBlue1;
+
+    // Where the last maximize() call would cut
+    private int mCut;
+
+    /**
+     * Constructor.
+     *
+     * @param histogram histogram representing an image's pixel data. It is only read.
+     * @param maxColors The maximum number of colors that should be in the result palette.
+     * @param filters Set of filters to use in the quantization stage
+     */
+    WuQuantizer(ColorHistogram histogram, int maxColors, Palette.Filter @Nullable [] filters) {
+        mFilters = filters;
+        mWordWidth = histogram.mWordWidth;
+        mCellShift = Math.max(0, mWordWidth - MAX_CELL_WIDTH);
+        mSideSize = (1 << (mWordWidth - mCellShift)) + 1;
+
+        // Gather the distinct colors which we shouldn't ignore
+        final int[] colors = new int[histogram.getPopulatedBucketCount()];
+        final int populatedCount = histogram.getPopulatedBuckets(colors);
+        final long[] populations = new long[populatedCount];
+        final IgnoredColors ignoredColors = IgnoredColors.get(filters, mWordWidth);
+        int distinctColorCount = 0;
+        for (int i = 0; i < populatedCount; i++) {
+            final int color = colors[i];
+            if (!IgnoredColors.isIgnored(ignoredColors, color)) {
+                colors[distinctColorCount] = color;
+                populations[distinctColorCount] = histogram.getCount(color);
+                distinctColorCount++;
+            }
+        }
+
+        if (distinctColorCount <= maxColors) {
+            // The image has fewer colors than the maximum requested, so just return the colors
+            mQuantizedColors = getDistinctColors(colors, populations, distinctColorCount);
+        } else {
+            final int tableSize = mSideSize * mSideSize * mSideSize;
+            mWeights = new long[tableSize];
+            mMomentsRed = new long[tableSize];
+            mMomentsGreen = new long[tableSize];
+            mMomentsBlue = new long[tableSize];
+            mMoments = new double[tableSize];
+            for (int i = 0; i < distinctColorCount; i++) {
+                addColor(colors[i], populations[i]);
+            }
+            computeCumulativeMoments();
+            mQuantizedColors = quantize(maxColors);
+        }
+    }
+
+    /**
+     * @return the list of quantized colors
+     */
+    List<Palette.Swatch> getQuantizedColors() {
+        return mQuantizedColors;
+    }
+
+    private void addColor(int color, long population) {
+        final int r = quantizedRed(color, mWordWidth);
+        final int g = quantizedGreen(color, mWordWidth);
+        final int b = quantizedBlue(color, mWordWidth);
+        final int index = index((r >> mCellShift) + 1, (g >> mCellShift) + 1, (b >> mCellShift) + 1);
+        mWeights[index] += population;
+        mMomentsRed[index] += population * r;
+        mMomentsGreen[index] += population * g;
+        mMomentsBlue[index] += population * b;
+        mMoments[index] += population * (double) (r * r + g * g + b * b);
+    }
+
+    private List<Palette.Swatch> getDistinctColors(int[] colors, long[] populations, int count) {
+        long maxPopulation = 0;
+        for (int i = 0; i < count; i++) {
+            maxPopulation = Math.max(maxPopulation, populations[i]);
+        }
+        final double populationScale = ColorCutQuantizer.getPopulationScale(maxPopulation);
+
+        final List<Palette.Swatch> swatches = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            swatches.add(new Palette.Swatch(
+                    approximateToRgb888(colors[i], mWordWidth),
+                    ColorCutQuantizer.scalePopulation(populations[i], populationScale)));
+        }
+        return swatches;
+    }
+
+    /**
+     * Turns each table into its 3D prefix sum, so that entry (r, g, b) holds the total of every
+     * entry with smaller or equal coordinates.
+     */
+    private void computeCumulativeMoments() {
+        final long[] areaWeights = new long[mSideSize];
+        final long[] areaRed = new long[mSideSize];
+        final long[] areaGreen = new long[mSideSize];
+        final long[] areaBlue = new long[mSideSize];
+        final double[] area = new double[mSideSize];
+
+        for (int r = 1; r < mSideSize; r++) {
+            Arrays.fill(areaWeights, 0);
+            Arrays.fill(areaRed, 0);
+            Arrays.fill(areaGreen, 0);
+            Arrays.fill(areaBlue, 0);
+            Arrays.fill(area, 0);
+
+            for (int g = 1; g < mSideSize; g++) {
+                long lineWeights = 0, lineRed = 0, lineGreen = 0, lineBlue = 0;
+                double line = 0;
+
+                for (int b = 1; b < mSideSize; b++) {
+                    final int index = index(r, g, b);
+                    final int previous = index(r - 1, g, b);
+
+                    lineWeights += mWeights[index];
+                    lineRed += mMomentsRed[index];
+                    lineGreen += mMomentsGreen[index];
+                    lineBlue += mMomentsBlue[index];
+                    line += mMoments[index];
+
+                    areaWeights[b] += lineWeights;
+                    areaRed[b] += lineRed;
+                    areaGreen[b] += lineGreen;
+                    areaBlue[b] += lineBlue;
+                    area[b] += line;
+
+                    mWeights[index] = mWeights[previous] + areaWeights[b];
+                    mMomentsRed[index] = mMomentsRed[previous] + areaRed[b];
+                    mMomentsGreen[index] = mMomentsGreen[previous] + areaGreen[b];
+                    mMomentsBlue[index] = mMomentsBlue[previous] + areaBlue[b];
+                    mMoments[index] = mMoments[previous] + area[b];
+                }
+            }
+        }
+    }
+
+    private List<Palette.Swatch> quantize(int maxColors) {
+        mRed0 = new int[maxColors];
+        mRed1 = new int[maxColors];
+        mGreen0 = new int[maxColors];
+        mGreen1 = new int[maxColors];
+        mBlue0 = new int[maxColors];
+        mBlue1 = new int[maxColors];
+        final double[] variances = new double[maxColors];
+
+        // To start, use a box which contains the whole color cube
+        mRed1[0] = mGreen1[0] = mBlue1[0] = mSideSize - 1;
+
+        int boxCount = 1;
+        int next = 0;
+        while (boxCount < maxColors) {
+            if (cut(next, boxCount)) {
+                // Boxes of a single cell can't be cut any further
+                variances[next] = volume(next) > 1 ? variance(next) : 0;
+                variances[boxCount] = volume(boxCount) > 1 ? variance(boxCount) : 0;
+                boxCount++;
+            } else {
+                variances[next] = 0;
+            }
+
+            // Next, cut the box with the largest variance
+            next = 0;
+            double maxVariance = variances[0];
+            for (int box = 1; box < boxCount; box++) {
+                if (variances[box] > maxVariance) {
+                    maxVariance = variances[box];
+                    next = box;
+                }
+            }
+            if (maxVariance <= 0) {
+                // No box can be cut any further
+                break;
+            }
+        }
+
+        return generateAverageColors(boxCount);
+    }
+
+    private List<Palette.Swatch> generateAverageColors(int boxCount) {
+        long maxPopulation = 0;
+        for (int box = 0; box < boxCount; box++) {
+            maxPopulation = Math.max(maxPopulation, moment(box, mWeights));
+        }
+        final double populationScale = ColorCutQuantizer.getPopulationScale(maxPopulation);
+
+        final List<Palette.Swatch> colors = new ArrayList<>(boxCount);
+        for (int box = 0; box < boxCount; box++) {
+            final long weight = moment(box, mWeights);
+            if (weight <= 0) {
+                continue;
+            }
+            final int r = (int) Math.round(moment(box, mMomentsRed) / (double) weight);
+            final int g = (int) Math.round(moment(box, mMomentsGreen) / (double) weight);
+            final int b = (int) Math.round(moment(box, mMomentsBlue) / (double) weight);
+            final Palette.Swatch swatch = new Palette.Swatch(
+                    approximateToRgb888(r, g, b, mWordWidth),
+                    ColorCutQuantizer.scalePopulation(weight, populationScale));
+            if (!ColorCutQuantizer.shouldIgnoreColor(swatch.getRgb(), swatch.getHsl(), mFilters)) {
+                // As we're averaging a color box, we can still get colors which we do not want, so
+                // we check again here
+                colors.add(swatch);
+            }
+        }
+        return colors;
+    }
+
+    /**
+     * Cuts {@code box} in two along the axis and at the point which reduces the variance the
+     * most, storing the second half as box {@code newBox}.
+     *
+     * @return false if the box can't be cut
+     */
+    private boolean cut(int box, int newBox) {
+        final long wholeRed = moment(box, mMomentsRed);
+        final long wholeGreen = moment(box, mMomentsGreen);
+        final long wholeBlue = moment(box, mMomentsBlue);
+        final long wholeWeight = moment(box, mWeights);
+
+        final double maxRed = maximize(box, DIRECTION_RED, mRed0[box] + 1, mRed1[box],
+                                       wholeRed, wholeGreen, wholeBlue, wholeWeight);
+        final int cutRed = mCut;
+        final double maxGreen = maximize(box, DIRECTION_GREEN, mGreen0[box] + 1, mGreen1[box],
+                                         wholeRed, wholeGreen, wholeBlue, wholeWeight);
+        final int cutGreen = mCut;
+        final double maxBlue = maximize(box, DIRECTION_BLUE, mBlue0[box] + 1, mBlue1[box],
+                                        wholeRed, wholeGreen, wholeBlue, wholeWeight);
+        final int cutBlue = mCut;
+
+        mRed1[newBox] = mRed1[box];
+        mGreen1[newBox] = mGreen1[box];
+        mBlue1[newBox] = mBlue1[box];
+
+        if (maxRed >= maxGreen && maxRed >= maxBlue) {
+            if (cutRed < 0) {
+                // The box can't be cut at all
+                return false;
+            }
+            mRed0[newBox] = mRed1[box] = cutRed;
+            mGreen0[newBox] = mGreen0[box];
+            mBlue0[newBox] = mBlue0[box];
+        } else if (maxGreen >= maxRed && maxGreen >= maxBlue) {
+            mGreen0[newBox] = mGreen1[box] = cutGreen;
+            mRed0[newBox] = mRed0[box];
+            mBlue0[newBox] = mBlue0[box];
+        } else {
+            mBlue0[newBox] = mBlue1[box] = cutBlue;
+            mRed0[newBox] = mRed0[box];
+            mGreen0[newBox] = mGreen0[box];
+        }
+        return true;
+    }
+
+    /**
+     * Finds the cut of {@code box} along {@code direction}, between {@code first} and
+     * {@code last}, which leaves the two halves with the largest sum of squared means weighted
+     * by population. That is the cut which reduces the total variance the most. The cut position
+     * is stored in {@link #mCut}, or -1 if no cut leaves both halves populated.
+     *
+     * @return the sum of squared means of the best cut
+     */
+    private double maximize(int box, int direction, int first, int last,
+            long wholeRed, long wholeGreen, long wholeBlue, long wholeWeight) {
+        final long baseRed = bottom(box, direction, mMomentsRed);
+        final long baseGreen = bottom(box, direction, mMomentsGreen);
+        final long baseBlue = bottom(box, direction, mMomentsBlue);
+        final long baseWeight = bottom(box, direction, mWeights);
+
+        double max = 0;
+        mCut = -1;
+        for (int i = first; i < last; i++) {
+            long halfRed = baseRed + top(box, direction, i, mMomentsRed);
+            long halfGreen = baseGreen + top(box, direction, i, mMomentsGreen);
+            long halfBlue = baseBlue + top(box, direction, i, mMomentsBlue);
+            long halfWeight = baseWeight + top(box, direction, i, mWeights);
+            if (halfWeight == 0) {
+                // The lower half would be empty
+                continue;
+            }
+            double temp = ((double) halfRed * halfRed + (double) halfGreen * halfGreen
+                    + (double) halfBlue * halfBlue) / halfWeight;
+
+            halfRed = wholeRed - halfRed;
+            halfGreen = wholeGreen - halfGreen;
+            halfBlue = wholeBlue - halfBlue;
+            halfWeight = wholeWeight - halfWeight;
+            if (halfWeight == 0) {
+                // The upper half would be empty
+                continue;
+            }
+            temp += ((double) halfRed * halfRed + (double) halfGreen * halfGreen
+                    + (double) halfBlue * halfBlue) / halfWeight;
+
+            if (temp > max) {
+                max = temp;
+                mCut = i;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the population weighted variance of the colors in {@code box}
+     */
+    private double variance(int box) {
+        final double red = moment(box, mMomentsRed);
+        final double green = moment(box, mMomentsGreen);
+        final double blue = moment(box, mMomentsBlue);
+        final double squares = moment(box, mMoments);
+        return squares - (red * red + green * green + blue * blue) / moment(box, mWeights);
+    }
+
+    /**
+     * @return the number of cells of the color cube which {@code box} covers
+     */
+    private int volume(int box) {
+        return (mRed1[box] - mRed0[box]) * (mGreen1[box] - mGreen0[box])
+                * (mBlue1[box] - mBlue0[box]);
+    }
+
+    /**
+     * @return the total of {@code moments} over {@code box}
+     */
+    private long moment(int box, long[] moments) {
+        final int r0 = mRed0[box], r1 = mRed1[box];
+        final int g0 = mGreen0[box], g1 = mGreen1[box];
+        final int b0 = mBlue0[box], b1 = mBlue1[box];
+        return moments[index(r1, g1, b1)]
+                - moments[index(r1, g1, b0)]
+                - moments[index(r1, g0, b1)]
+                + moments[index(r1, g0, b0)]
+                - moments[index(r0, g1, b1)]
+                + moments[index(r0, g1, b0)]
+                + moments[index(r0, g0, b1)]
+                - moments[index(r0, g0, b0)];
+    }
+
+    private double moment(int box, double[] moments) {
+        final int r0 = mRed0[box], r1 = mRed1[box];
+        final int g0 = mGreen0[box], g1 = mGreen1[box];
+        final int b0 = mBlue0[box], b1 = mBlue1[box];
+        return moments[index(r1, g1, b1)]
+                - moments[index(r1, g1, b0)]
+                - moments[index(r1, g0, b1)]
+                + moments[index(r1, g0, b0)]
+                - moments[index(r0, g1, b1)]
+                + moments[index(r0, g1, b0)]
+                + moments[index(r0, g0, b1)]
+                - moments[index(r0, g0, b0)];
+    }
+
+    /**
+     * @return the part of {@link #moment(int, long[])} of {@code box} which doesn't depend on its
+     * upper bound along {@code direction}
+     */
+    private long bottom(int box, int direction, long[] moments) {
+        final int r0 = mRed0[box], r1 = mRed1[box];
+        final int g0 = mGreen0[box], g1 = mGreen1[box];
+        final int b0 = mBlue0[box], b1 = mBlue1[box];
+        switch (direction) {
+            case DIRECTION_RED:
+                return -moments[index(r0, g1, b1)]
+                        + moments[index(r0, g1, b0)]
+                        + moments[index(r0, g0, b1)]
+                        - moments[index(r0, g0, b0)];
+            case DIRECTION_GREEN:
+                return -moments[index(r1, g0, b1)]
+                        + moments[index(r1, g0, b0)]
+                        + moments[index(r0, g0, b1)]
+                        - moments[index(r0, g0, b0)];
+            default:
+                return -moments[index(r1, g1, b0)]
+                        + moments[index(r1, g0, b0)]
+                        + moments[index(r0, g1, b0)]
+                        - moments[index(r0, g0, b0)];
+        }
+    }
+
+    /**
+     * @return the part of {@link #moment(int, long[])} of {@code box} which depends on its upper
+     * bound along {@code direction}, with that bound moved to {@code position}
+     */
+    private long top(int box, int direction, int position, long[] moments) {
+        final int r0 = mRed0[box], r1 = mRed1[box];
+        final int g0 = mGreen0[box], g1 = mGreen1[box];
+        final int b0 = mBlue0[box], b1 = mBlue1[box];
+        switch (direction) {
+            case DIRECTION_RED:
+                return moments[index(position, g1, b1)]
+                        - moments[index(position, g1, b0)]
+                        - moments[index(position, g0, b1)]
+                        + moments[index(position, g0, b0)];
+            case DIRECTION_GREEN:
+                return moments[index(r1, position, b1)]
+                        - moments[index(r1, position, b0)]
+                        - moments[index(r0, position, b1)]
+                        + moments[index(r0, position, b0)];
+            default:
+                return moments[index(r1, g1, position)]
+                        - moments[index(r1, g0, position)]
+                        - moments[index(r0, g1, position)]
+                        + moments[index(r0, g0, position)];
+        }
+    }
+
+    private int index(int r, int g, int b) {
+        return (r * mSideSize + g) * mSideSize + b;
+    }
+}
@@ -0,0 +1,56 @@
+package androidx.palette.graphics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The innermost loop of reading an image: quantizing ARGB pixels and counting them into a dense
+ * histogram.
+ * <p>
+ * This is the Java 17 version, which replaces the one in {@code src/main/java} when the library
+ * jar runs on Java 17 or newer. It quantizes pixels with the Vector API when the
+ * {@code jdk.incubator.vector} module has been added to the JVM, with
+ * {@code --add-modules jdk.incubator.vector}, and falls back to the scalar loop otherwise.
+ */
+final class PixelQuantizer {
+    // Whether the Vector API can be used. The vector code lives in another class, so this one
+    // still loads when the incubator module is missing
+    private static final boolean VECTORIZED =
+            ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && VectorPixelQuantizer.isUseful();
+
+    private PixelQuantizer() {
+    }
+
+    /**
+     * @return true if pixels are quantized with SIMD instructions
+     */
+    static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * @return the size of the scratch array {@link #countPixels} needs, which holds a vector of
+     * bucket indices
+     */
+    static int getScratchSize() {
+        return VECTORIZED ? VectorPixelQuantizer.getLaneCount() : 0;
+    }
+
+    /**
+     * Quantizes {@code length} ARGB pixels, starting at {@code offset}, to {@code wordWidth} bits
+     * per component and adds one to the count of each one's bucket.
+     *
+     * @param scratch array of at least {@link #getScratchSize()} ints, kept by the caller so the
+     *                hot loop doesn't allocate
+     */
+    static void countPixels(int @NotNull [] pixels, int offset, int length, int wordWidth,
+            long @NotNull [] counts, int @NotNull [] scratch) {
+        int i = offset;
+        if (VECTORIZED) {
+            i = VectorPixelQuantizer.countPixels(pixels, offset, length, wordWidth, counts, scratch);
+        }
+        for (int end = offset + length; i < end; i++) {
+            counts[ColorCutQuantizer.quantizeFromRgb888(pixels[i], wordWidth)]++;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package androidx.palette.graphics;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Quantizes pixels a whole vector at a time. Only loaded by {@link PixelQuantizer} once it knows
+ * the {@code jdk.incubator.vector} module is present.
+ * <p>
+ * Shifting and masking the components into a bucket index is data parallel, but adding to the
+ * counts isn't, as several lanes may hit the same bucket. So each vector of indices is stored to
+ * a small array and the counts are incremented one lane at a time.
+ */
+final class VectorPixelQuantizer {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private VectorPixelQuantizer() {
+    }
+
+    /**
+     * @return true if vectors hold more than one int on this CPU, so they are worth using
+     */
+    static boolean isUseful() {
+        return SPECIES.length() > 1;
+    }
+
+    /**
+     * @return the number of ints a vector holds
+     */
+    static int getLaneCount() {
+        return SPECIES.length();
+    }
+
+    /**
+     * Counts as many whole vectors of pixels as fit in {@code length}.
+     *
+     * @param buckets array of at least {@link #getLaneCount()} ints to store each vector of
+     *                bucket indices in
+     * @return the index of the first pixel which is left for the scalar loop
+     */
+    static int countPixels(int[] pixels, int offset, int length, int wordWidth, long[] counts,
+            int[] buckets) {
+        final int lanes = SPECIES.length();
+        final int end = offset + SPECIES.loopBound(length);
+        final int shift = 8 - wordWidth;
+        final int mask = (1 << wordWidth) - 1;
+
+        for (int i = offset; i < end; i += lanes) {
+            final IntVector pixel = IntVector.fromArray(SPECIES, pixels, i);
+            final IntVector red = pixel.lanewise(VectorOperators.LSHR, 16 + shift).and(mask);
+            final IntVector green = pixel.lanewise(VectorOperators.LSHR, 8 + shift).and(mask);
+            final IntVector blue = pixel.lanewise(VectorOperators.LSHR, shift).and(mask);
+            red.lanewise(VectorOperators.LSHL, 2 * wordWidth)
+                    .or(green.lanewise(VectorOperators.LSHL, wordWidth))
+                    .or(blue)
+                    .intoArray(buckets, 0);
+            for (int lane = 0; lane < lanes; lane++) {
+                counts[buckets[lane]]++;
+            }
+        }
+        return end;
+    }
+}
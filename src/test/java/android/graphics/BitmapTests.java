@@ -0,0 +1,84 @@
+package android.graphics;
+
+import static androidx.core.graphics.ColorUtils.rgbaToArgb;
+import static org.junit.Assert.assertEquals;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+@RunWith(GdxTestRunner.class)
+public class BitmapTests {
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 23;
+
+    @Test
+    public void testRgba8888MatchesGetPixel() {
+        testFormat(Pixmap.Format.RGBA8888);
+    }
+
+    @Test
+    public void testRgb888MatchesGetPixel() {
+        testFormat(Pixmap.Format.RGB888);
+    }
+
+    @Test
+    public void testRgb565MatchesGetPixel() {
+        testFormat(Pixmap.Format.RGB565);
+    }
+
+    @Test
+    public void testRgba4444MatchesGetPixel() {
+        testFormat(Pixmap.Format.RGBA4444);
+    }
+
+    @Test
+    public void testAlphaMatchesGetPixel() {
+        testFormat(Pixmap.Format.Alpha);
+    }
+
+    @Test
+    public void testLuminanceAlphaMatchesGetPixel() {
+        testFormat(Pixmap.Format.LuminanceAlpha);
+    }
+
+    private static void testFormat(Pixmap.Format format) {
+        final Pixmap pixmap = createNoisePixmap(format);
+        try (Bitmap bitmap = Bitmap.of(pixmap, true)) {
+            // Whole bitmap
+            final int[] pixels = new int[WIDTH * HEIGHT];
+            bitmap.getPixels(pixels, 0, WIDTH, 0, 0, WIDTH, HEIGHT);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    assertEquals(rgbaToArgb(pixmap.getPixel(x, y)), pixels[y * WIDTH + x]);
+                }
+            }
+
+            // A sub-rectangle written with an offset and a stride wider than the rectangle
+            final int left = 5, top = 3, width = 20, height = 11, offset = 7, stride = 24;
+            final int[] region = new int[offset + stride * height];
+            bitmap.getPixels(region, offset, stride, left, top, width, height);
+            for (int row = 0; row < height; row++) {
+                for (int col = 0; col < width; col++) {
+                    assertEquals(rgbaToArgb(pixmap.getPixel(left + col, top + row)),
+                                 region[offset + row * stride + col]);
+                }
+            }
+        }
+    }
+
+    private static Pixmap createNoisePixmap(Pixmap.Format format) {
+        final Pixmap pixmap = new Pixmap(WIDTH, HEIGHT, format);
+        pixmap.setBlending(Pixmap.Blending.None);
+        final Random random = new Random(format.ordinal());
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                pixmap.drawPixel(x, y, random.nextInt());
+            }
+        }
+        return pixmap;
+    }
+}
@@ -0,0 +1,108 @@
+package android.graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.palette.graphics.Palette;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(GdxTestRunner.class)
+public class PixmapPoolTests {
+    private static final long BUDGET = 1 << 20;
+
+    @Test
+    public void testReusedPixmapIsCleared() {
+        final PixmapPool pool = new PixmapPool(BUDGET);
+        final Pixmap pixmap = pool.obtain(16, 16, Pixmap.Format.RGBA8888);
+        pixmap.setColor(0xFF0000FF);
+        pixmap.fill();
+        pool.free(pixmap);
+
+        final Pixmap reused = pool.obtain(16, 16, Pixmap.Format.RGBA8888);
+        assertSame(pixmap, reused);
+        assertEquals(0, reused.getPixel(7, 7));
+        assertEquals(0, pool.getIdleBytes());
+        reused.dispose();
+    }
+
+    @Test
+    public void testKeyedBySizeAndFormat() {
+        final PixmapPool pool = new PixmapPool(BUDGET);
+        final Pixmap pixmap = pool.obtain(16, 16, Pixmap.Format.RGBA8888);
+        pool.free(pixmap);
+
+        assertNotSame(pixmap, pool.obtain(16, 8, Pixmap.Format.RGBA8888));
+        assertNotSame(pixmap, pool.obtain(16, 16, Pixmap.Format.RGB888));
+        assertSame(pixmap, pool.obtain(16, 16, Pixmap.Format.RGBA8888));
+    }
+
+    @Test
+    public void testBudgetEvictsLeastRecentlyUsed() {
+        // Room for two 64x64 RGBA8888 pixmaps
+        final PixmapPool pool = new PixmapPool(2 * 64 * 64 * 4);
+        final Pixmap first = new Pixmap(64, 64, Pixmap.Format.RGBA8888);
+        final Pixmap second = new Pixmap(64, 64, Pixmap.Format.RGB888);
+        final Pixmap third = new Pixmap(64, 64, Pixmap.Format.RGBA8888);
+        pool.free(first);
+        pool.free(second);
+        pool.free(third);
+
+        assertTrue(first.isDisposed());
+        assertFalse(second.isDisposed());
+        assertFalse(third.isDisposed());
+        assertEquals(64 * 64 * 3 + 64 * 64 * 4, pool.getIdleBytes());
+
+        pool.dispose();
+        assertTrue(second.isDisposed());
+        assertTrue(third.isDisposed());
+        assertEquals(0, pool.getIdleBytes());
+    }
+
+    @Test
+    public void testPixmapLargerThanBudgetIsDisposed() {
+        final PixmapPool pool = new PixmapPool(100);
+        final Pixmap pixmap = new Pixmap(64, 64, Pixmap.Format.RGBA8888);
+        pool.free(pixmap);
+        assertTrue(pixmap.isDisposed());
+        assertEquals(0, pool.getIdleBytes());
+    }
+
+    @Test
+    public void testScaledBitmapReturnsPixmapOnDispose() {
+        final PixmapPool pool = new PixmapPool(BUDGET);
+        try (Bitmap source = Bitmap.of(new Pixmap(100, 100, Pixmap.Format.RGBA8888), true)) {
+            final Bitmap scaled = Bitmap.createScaledBitmap(source, 10, 10, false, pool);
+            scaled.dispose();
+            assertTrue(scaled.isDisposed());
+            assertEquals(10 * 10 * 4, pool.getIdleBytes());
+        }
+        pool.dispose();
+    }
+
+    @Test
+    public void testPaletteWithPoolMatchesWithout() {
+        final PixmapPool pool = new PixmapPool(BUDGET);
+        try (Bitmap bitmap = Bitmap.of(new Pixmap(300, 300, Pixmap.Format.RGBA8888) {{
+            setColor(0x00FF00FF);
+            fill();
+            setColor(0xFF0000FF);
+            fillRectangle(0, 0, 300, 100);
+        }}, true)) {
+            final Palette expected = Palette.from(bitmap).generate();
+            // The second generate reuses the pixmap of the first
+            for (int i = 0; i < 2; i++) {
+                final Palette palette = Palette.from(bitmap).setPixmapPool(pool).generate();
+                assertEquals(expected.getSwatches(), palette.getSwatches());
+                assertTrue(pool.getIdleBytes() > 0);
+            }
+        }
+        pool.dispose();
+    }
+}
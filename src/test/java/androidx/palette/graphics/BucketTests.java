@@ -20,6 +20,7 @@ import static androidx.core.graphics.ColorUtils.argbToRgba;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import android.graphics.Bitmap;
 import android.graphics.Color;
@@ -89,6 +90,82 @@ public class BucketTests {
         }
     }
 
+    @Test
+    public void testRegionExcludesRestOfBitmap() {
+        try (Bitmap bitmap = Bitmap.of(
+                new Pixmap(400, 400, Pixmap.Format.RGBA8888) {{
+                    setColor(argbToRgba(Color.RED));
+                    fill();
+                    setColor(argbToRgba(Color.BLUE));
+                    fillRectangle(0, 200, 400, 200);
+                }}
+        )) {
+            for (Palette.ScaleMode mode : Palette.ScaleMode.values()) {
+                final Palette.Builder b = Palette.from(bitmap)
+                        .resizeBitmapArea(50 * 50)
+                        .setScaleMode(mode)
+                        .setRegion(0, 200, 400, 400);
+                final Palette palette = b.generate();
+
+                assertEquals(1, palette.getSwatches().size());
+                TestUtils.assertCloseColors(Color.BLUE, palette.getSwatches().get(0).getRgb());
+                // Generating again must give the same result
+                assertEquals(palette.getSwatches(), b.generate().getSwatches());
+            }
+        }
+    }
+
+    @Test
+    public void testRegionIsClippedToBitmap() {
+        try (Bitmap bitmap = Bitmap.of(
+                new Pixmap(100, 100, Pixmap.Format.RGBA8888) {{
+                    setColor(argbToRgba(Color.RED));
+                    fill();
+                    setColor(argbToRgba(Color.BLUE));
+                    fillRectangle(50, 50, 50, 50);
+                }}
+        )) {
+            final Palette palette = Palette.from(bitmap).setRegion(50, 50, 500, 500).generate();
+            assertEquals(1, palette.getSwatches().size());
+            TestUtils.assertCloseColors(Color.BLUE, palette.getSwatches().get(0).getRgb());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegionOutsideBitmap() {
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            Palette.from(sample).setRegion(sample.getWidth(), 0, sample.getWidth() + 10, 10);
+        }
+    }
+
+    @Test
+    public void testRegionOnlyReadsRegion() {
+        final int width = 500, height = 400;
+        final int[] pixels = new int[width * height];
+        // A source which fails any read outside of the region
+        final PixelSource source = new PixelSource() {
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public void getPixels(int[] out, int offset, int stride, int x, int y, int w, int h) {
+                assertTrue(x >= 100 && y >= 50 && x + w <= 140 && y + h <= 90);
+                PixelSource.ofArgb(pixels, width, height).getPixels(out, offset, stride, x, y, w, h);
+            }
+        };
+        for (Palette.ScaleMode mode : Palette.ScaleMode.values()) {
+            Palette.from(source).resizeBitmapArea(20 * 20).setScaleMode(mode)
+                    .setRegion(100, 50, 140, 90).generate();
+        }
+    }
+
     @Test
     public void testOnePixelTallBitmap() {
 //        final Bitmap bitmap = Bitmap.createBitmap(1000, 1, Bitmap.Config.ARGB_8888);
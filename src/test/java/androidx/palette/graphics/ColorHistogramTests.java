@@ -0,0 +1,221 @@
+package androidx.palette.graphics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Color;
+import androidx.core.graphics.ColorUtils;
+
+import kww.test.GdxTestRunner;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+@RunWith(GdxTestRunner.class)
+public class ColorHistogramTests {
+
+    @Test
+    public void testTilesCoverWideSource() {
+        // Wider than a single read, so rows have to be split into tiles
+        final int width = 40000, height = 3;
+        final int[] pixels = TestUtils.createNoise(width * height);
+        final RecordingSource source = new RecordingSource(PixelSource.ofArgb(pixels, width, height));
+
+        final ColorHistogram tiled = new ColorHistogram();
+        tiled.addPixels(source, 0, 0, width, height);
+        final ColorHistogram expected = new ColorHistogram();
+        expected.addPixels(pixels, 0, pixels.length);
+
+        assertArrayEquals(expected.mCounts, tiled.mCounts);
+        assertTrue(source.mMaxRead <= 1 << 14);
+    }
+
+    @Test
+    public void testSampledAndAveragedReadsAreBounded() {
+        final int width = 40000, height = 4;
+        final RecordingSource source = new RecordingSource(
+                PixelSource.ofArgb(TestUtils.createNoise(width * height), width, height));
+
+        final ColorHistogram sampled = new ColorHistogram();
+        sampled.addSampledPixels(source, 0, 0, width, height, 30000, 2);
+        assertEquals(30000 * 2, sum(sampled.mCounts));
+
+        final ColorHistogram averaged = new ColorHistogram();
+        averaged.addAveragedPixels(source, 0, 0, width, height, 30000, 2);
+        assertEquals(30000 * 2, sum(averaged.mCounts));
+
+        assertTrue(source.mMaxRead <= 1 << 14);
+    }
+
+    @Test
+    public void testParallelCountsMatchSequential() {
+        // Large enough to be split into several bands
+        final int width = 1500, height = 1000;
+        final int[] pixels = TestUtils.createNoise(width * height);
+        final PixelSource source = PixelSource.ofArgb(pixels, width, height);
+        for (int precision = ColorHistogram.MIN_PRECISION;
+             precision <= ColorHistogram.MAX_PRECISION; precision++) {
+            final ColorHistogram expected = new ColorHistogram(precision);
+            expected.addPixels(pixels, 0, pixels.length);
+            final ColorHistogram parallel = new ColorHistogram(precision);
+            parallel.addPixelsInParallel(source, 0, 0, width, height);
+            for (int bucket = 0; bucket < expected.getBucketCount(); bucket++) {
+                assertEquals(expected.getCount(bucket), parallel.getCount(bucket));
+            }
+        }
+    }
+
+    @Test
+    public void testParallelPalette() {
+        final int width = 1200, height = 1000;
+        final PixelSource source = PixelSource.ofArgb(TestUtils.createNoise(width * height), width, height);
+        assertEquals(Palette.from(source).resizeBitmapArea(0).generate().getSwatches(),
+                     Palette.from(source).resizeBitmapArea(0).setParallel(true).generate().getSwatches());
+    }
+
+    @Test
+    public void testPopulationsBeyondIntRange() {
+        final ColorHistogram histogram = new ColorHistogram();
+        histogram.mCounts[ColorCutQuantizer.quantizeFromRgb888(Color.RED)] = 6_000_000_000L;
+        histogram.mCounts[ColorCutQuantizer.quantizeFromRgb888(Color.BLUE)] = 3_000_000_000L;
+
+        final List<Palette.Swatch> swatches =
+                new ColorCutQuantizer(histogram, 16, null).getQuantizedColors();
+        assertEquals(2, swatches.size());
+        final Palette.Swatch red = swatches.get(0).getRgb() == Color.RED ? swatches.get(0) : swatches.get(1);
+        final Palette.Swatch blue = red == swatches.get(0) ? swatches.get(1) : swatches.get(0);
+
+        // Populations are scaled into int range, keeping their proportions
+        assertEquals(Integer.MAX_VALUE, red.getPopulation());
+        assertEquals(2.0, red.getPopulation() / (double) blue.getPopulation(), 1e-6);
+    }
+
+    @Test
+    public void testAverageColorBeyondIntRange() {
+        // Two shades of red averaged into one box: the weighted sums overflow an int
+        final ColorHistogram histogram = new ColorHistogram();
+        histogram.mCounts[ColorCutQuantizer.quantizeFromRgb888(ColorUtils.rgb(248, 0, 0))] = 3_000_000_000L;
+        histogram.mCounts[ColorCutQuantizer.quantizeFromRgb888(ColorUtils.rgb(200, 0, 0))] = 1_000_000_000L;
+
+        final List<Palette.Swatch> swatches =
+                new ColorCutQuantizer(histogram, 1, null).getQuantizedColors();
+        assertEquals(1, swatches.size());
+        // (31 * 3 + 25) / 4 = 29.5 rounds to 30, which is 240 as RGB888
+        assertEquals(ColorUtils.rgb(240, 0, 0), swatches.get(0).getRgb());
+        assertEquals(Integer.MAX_VALUE, swatches.get(0).getPopulation());
+    }
+
+    @Test
+    public void testMergeMatchesCombinedImage() {
+        for (int precision = ColorHistogram.MIN_PRECISION; precision <= ColorHistogram.MAX_PRECISION; precision++) {
+            final int width = 64, height = 32;
+            final PixelSource source = PixelSource.ofArgb(TestUtils.createNoise(width * height), width, height);
+            final ColorHistogram expected = new ColorHistogram(precision);
+            expected.addPixels(source);
+
+            // The top and bottom halves, counted separately
+            final ColorHistogram merged = new ColorHistogram(precision);
+            merged.addPixels(source, 0, 0, width, height / 2);
+            final ColorHistogram bottom = new ColorHistogram(precision);
+            bottom.addPixels(source, 0, height / 2, width, height - height / 2);
+            merged.merge(bottom);
+
+            assertHistogramsEqual(expected, merged);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeDifferentPrecisions() {
+        new ColorHistogram(4).merge(new ColorHistogram(5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegionOutsideSource() {
+        new ColorHistogram().addPixels(PixelSource.ofArgb(new int[16], 4, 4), 2, 2, 3, 2);
+    }
+
+    @Test
+    public void testScale() {
+        for (int precision : new int[] {5, 6}) {
+            final ColorHistogram histogram = new ColorHistogram(precision);
+            histogram.addPixels(new int[] {Color.RED, Color.RED, Color.RED, Color.RED, Color.BLUE}, 0, 5);
+            final int red = ColorCutQuantizer.quantizeFromRgb888(Color.RED, precision);
+            final int blue = ColorCutQuantizer.quantizeFromRgb888(Color.BLUE, precision);
+
+            histogram.scale(2.5);
+            assertEquals(10, histogram.getCount(red));
+            assertEquals(3, histogram.getCount(blue));
+
+            // Decaying far enough drops blue altogether
+            histogram.scale(0.1);
+            assertEquals(1, histogram.getCount(red));
+            assertEquals(0, histogram.getCount(blue));
+            assertEquals(1, histogram.getPopulatedBucketCount());
+        }
+    }
+
+    @Test
+    public void testQuantizeMatchesPalette() {
+        final int width = 100, height = 80;
+        final PixelSource source = PixelSource.ofArgb(TestUtils.createNoise(width * height), width, height);
+        final ColorHistogram histogram = new ColorHistogram();
+        histogram.addPixels(source);
+
+        final Palette expected = Palette.from(source).resizeBitmapArea(0).generate();
+        assertEquals(expected.getSwatches(), histogram.quantize(
+                Quantizer.colorCut(), Palette.DEFAULT_CALCULATE_NUMBER_COLORS,
+                new Palette.Filter[] {Palette.DEFAULT_FILTER}));
+        assertEquals(expected.getSwatches(), Palette.from(histogram).generate().getSwatches());
+    }
+
+    private static void assertHistogramsEqual(ColorHistogram expected, ColorHistogram actual) {
+        assertEquals(expected.getPrecision(), actual.getPrecision());
+        final int[] expectedBuckets = new int[expected.getPopulatedBucketCount()];
+        final int[] actualBuckets = new int[actual.getPopulatedBucketCount()];
+        expected.getPopulatedBuckets(expectedBuckets);
+        actual.getPopulatedBuckets(actualBuckets);
+        assertArrayEquals(expectedBuckets, actualBuckets);
+        for (int bucket : expectedBuckets) {
+            assertEquals(expected.getCount(bucket), actual.getCount(bucket));
+        }
+    }
+
+    private static long sum(long[] counts) {
+        long sum = 0;
+        for (long count : counts) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    /**
+     * Remembers the largest number of pixels read at once.
+     */
+    private static final class RecordingSource implements PixelSource {
+        private final PixelSource mSource;
+        int mMaxRead;
+
+        RecordingSource(PixelSource source) {
+            mSource = source;
+        }
+
+        @Override
+        public int getWidth() {
+            return mSource.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return mSource.getHeight();
+        }
+
+        @Override
+        public void getPixels(int @NotNull [] pixels, int offset, int stride, int x, int y, int width, int height) {
+            mMaxRead = Math.max(mMaxRead, width * height);
+            mSource.getPixels(pixels, offset, stride, x, y, width, height);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package androidx.palette.graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.core.graphics.ColorUtils;
+
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(GdxTestRunner.class)
+public class IgnoredColorsTests {
+
+    @Test
+    public void testMaskMatchesFilters() {
+        final Palette.Filter[] filters = {Palette.DEFAULT_FILTER};
+        for (int precision = ColorHistogram.MIN_PRECISION;
+             precision <= ColorHistogram.MAX_PRECISION; precision++) {
+            final IgnoredColors ignoredColors = IgnoredColors.get(filters, precision);
+            assertTrue(ignoredColors.hasMask());
+            assertMatchesFilters(filters, precision, ignoredColors);
+        }
+    }
+
+    @Test
+    public void testNoMaskForCustomFilters() {
+        final int[] minGreen = {0};
+        // Captures state, so its answers can change between generates
+        final Palette.Filter filter = (rgb, hsl) -> ColorUtils.green(rgb) > minGreen[0];
+        final Palette.Filter[] filters = {filter};
+
+        // Custom filters are tested bucket by bucket every time, with the same results
+        final IgnoredColors first = IgnoredColors.get(filters, 4);
+        assertFalse(first.hasMask());
+        assertMatchesFilters(filters, 4, first);
+
+        // Seeing the same filters again still builds no mask, so a changed answer is seen
+        minGreen[0] = 128;
+        final IgnoredColors second = IgnoredColors.get(filters, 4);
+        assertFalse(second.hasMask());
+        assertMatchesFilters(filters, 4, second);
+
+        // Neither does the default filter combined with others
+        assertFalse(IgnoredColors.get(new Palette.Filter[] {Palette.DEFAULT_FILTER, filter}, 4)
+                            .hasMask());
+    }
+
+    @Test
+    public void testNoFilters() {
+        assertNull(IgnoredColors.get(null, 5));
+        assertNull(IgnoredColors.get(new Palette.Filter[0], 5));
+        assertFalse(IgnoredColors.isIgnored(null, 0));
+    }
+
+    private static void assertMatchesFilters(Palette.Filter[] filters, int precision,
+            IgnoredColors ignoredColors) {
+        final float[] hsl = new float[3];
+        for (int bucket = 0; bucket < 1 << (3 * precision); bucket++) {
+            final int rgb = ColorCutQuantizer.approximateToRgb888(bucket, precision);
+            ColorUtils.colorToHSL(rgb, hsl);
+            assertEquals(ColorCutQuantizer.shouldIgnoreColor(rgb, hsl, filters),
+                         IgnoredColors.isIgnored(ignoredColors, bucket));
+        }
+    }
+}
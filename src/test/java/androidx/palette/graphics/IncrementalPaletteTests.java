@@ -0,0 +1,84 @@
+package androidx.palette.graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import android.graphics.Color;
+
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+@RunWith(GdxTestRunner.class)
+public class IncrementalPaletteTests {
+    private static final int WIDTH = 120, HEIGHT = 90;
+
+    @Test
+    public void testUpdateMatchesRegenerate() {
+        for (int precision = ColorHistogram.MIN_PRECISION; precision <= ColorHistogram.MAX_PRECISION; precision++) {
+            final int[] pixels = TestUtils.createNoise(WIDTH * HEIGHT);
+            final PixelSource source = PixelSource.ofArgb(pixels, WIDTH, HEIGHT);
+            final IncrementalPalette incremental = Palette.from(source)
+                    .setPrecision(precision)
+                    .generateIncremental();
+
+            final Random random = new Random(precision);
+            for (int stroke = 0; stroke < 5; stroke++) {
+                final int x = random.nextInt(WIDTH - 20), y = random.nextInt(HEIGHT - 20);
+                final int[] oldPixels = paint(pixels, x, y, 20, 20, Color.RED + stroke * 0x1020);
+                incremental.update(x, y, 20, 20, oldPixels);
+
+                final Palette expected = Palette.from(source)
+                        .resizeBitmapArea(0)
+                        .setPrecision(precision)
+                        .generate();
+                assertEquals(expected.getSwatches(), incremental.getPalette().getSwatches());
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateOutsideRegion() {
+        final int[] pixels = TestUtils.createNoise(WIDTH * HEIGHT);
+        final PixelSource source = PixelSource.ofArgb(pixels, WIDTH, HEIGHT);
+        final IncrementalPalette incremental = Palette.from(source)
+                .setRegion(0, 0, 60, 45)
+                .generateIncremental();
+        final Palette before = incremental.getPalette();
+
+        // Entirely outside the region, so nothing changes
+        assertSame(before, incremental.update(80, 50, 10, 10, paint(pixels, 80, 50, 10, 10, Color.BLUE)));
+
+        // Straddling the region's corner, so only part of it counts
+        incremental.update(50, 40, 20, 20, paint(pixels, 50, 40, 20, 20, Color.BLUE));
+        final Palette expected = Palette.from(source)
+                .setRegion(0, 0, 60, 45)
+                .resizeBitmapArea(0)
+                .generate();
+        assertEquals(expected.getSwatches(), incremental.getPalette().getSwatches());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpdateOutsideSource() {
+        final PixelSource source = PixelSource.ofArgb(TestUtils.createNoise(WIDTH * HEIGHT), WIDTH, HEIGHT);
+        Palette.from(source).generateIncremental().update(WIDTH - 5, 0, 10, 10, new int[100]);
+    }
+
+    /**
+     * Fills a rectangle of {@code pixels} with {@code color}.
+     *
+     * @return the pixels the rectangle held before
+     */
+    private static int[] paint(int[] pixels, int x, int y, int width, int height, int color) {
+        final int[] oldPixels = new int[width * height];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                oldPixels[row * width + col] = pixels[(y + row) * WIDTH + x + col];
+                pixels[(y + row) * WIDTH + x + col] = color;
+            }
+        }
+        return oldPixels;
+    }
+}
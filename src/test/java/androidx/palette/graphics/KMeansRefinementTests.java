@@ -0,0 +1,75 @@
+package androidx.palette.graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import androidx.core.graphics.ColorUtils;
+
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(GdxTestRunner.class)
+public class KMeansRefinementTests {
+
+    @Test
+    public void testSwatchMovesToCenter() {
+        final ColorHistogram histogram = new ColorHistogram();
+        histogram.mCounts[ColorCutQuantizer.quantizeFromRgb888(ColorUtils.rgb(80, 0, 0))] = 1;
+        histogram.mCounts[ColorCutQuantizer.quantizeFromRgb888(ColorUtils.rgb(160, 0, 0))] = 3;
+
+        // Seeded far off, the swatch ends up on the weighted mean of both colors
+        final List<Palette.Swatch> refined = new KMeansRefinement(histogram, null).refine(
+                Collections.singletonList(new Palette.Swatch(ColorUtils.rgb(0, 0, 255), 1)),
+                10, 0.5f);
+        assertEquals(1, refined.size());
+        assertEquals(ColorUtils.rgb(140, 0, 0), refined.get(0).getRgb());
+        assertEquals(4, refined.get(0).getPopulation());
+    }
+
+    @Test
+    public void testParallelAssignment() {
+        // Enough colors and swatches for the assignment to be split over the fork join pool
+        final ColorHistogram histogram = new ColorHistogram();
+        long total = 0;
+        for (int bucket = 0; bucket < histogram.mCounts.length; bucket += 3) {
+            histogram.mCounts[bucket] = bucket % 7 + 1;
+            total += histogram.mCounts[bucket];
+        }
+        final List<Palette.Swatch> seeds = Quantizer.colorCut().quantize(histogram, 32, null);
+
+        final List<Palette.Swatch> refined =
+                new KMeansRefinement(histogram, null).refine(seeds, 5, 0);
+        // Every color is assigned to exactly one swatch, however the work was split
+        long population = 0;
+        for (Palette.Swatch swatch : refined) {
+            population += swatch.getPopulation();
+        }
+        assertEquals(total, population);
+        assertEquals(refined, new KMeansRefinement(histogram, null).refine(seeds, 5, 0));
+    }
+
+    @Test
+    public void testBuilderRefinement() {
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            final Palette plain = Palette.from(sample).generate();
+            assertEquals(plain.getSwatches(),
+                         Palette.from(sample).setRefinement(0).generate().getSwatches());
+
+            final Palette refined = Palette.from(sample).setRefinement(8).generate();
+            assertTrue(refined.getSwatches().size() <= 16);
+            assertTrue(refined.getSwatches().size() > 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeIterations() {
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            Palette.from(sample).setRefinement(-1);
+        }
+    }
+}
@@ -16,13 +16,17 @@
 
 package androidx.palette.graphics;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import android.graphics.Bitmap;
+import androidx.core.graphics.ColorUtils;
 import kww.test.GdxTestRunner;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Random;
+
 @RunWith(GdxTestRunner.class)
 public class MaxColorsTest {
 
@@ -41,6 +45,51 @@ public class MaxColorsTest {
         testMaxColorCount(15);
     }
 
+    @Test
+    public void testMinimumBoxSizeAdaptsColorCount() {
+        // Three well separated colors, each with a little noise
+        final int[] centers = {ColorUtils.rgb(200, 40, 40), ColorUtils.rgb(40, 160, 60),
+                               ColorUtils.rgb(60, 70, 200)};
+        final Random random = new Random(3);
+        final int[] pixels = new int[90 * 90];
+        for (int i = 0; i < pixels.length; i++) {
+            final int center = centers[i % centers.length];
+            pixels[i] = ColorUtils.rgb(ColorUtils.red(center) + random.nextInt(13) - 6,
+                                       ColorUtils.green(center) + random.nextInt(13) - 6,
+                                       ColorUtils.blue(center) + random.nextInt(13) - 6);
+        }
+        final PixelSource source = PixelSource.ofArgb(pixels, 90, 90);
+
+        // Without a minimum the clusters are split into shades up to the maximum
+        assertEquals(16, Palette.from(source).generate().getSwatches().size());
+
+        final Palette adaptive = Palette.from(source)
+                .setQuantizer(Quantizer.colorCut(48))
+                .generate();
+        // The first cut is along red at the population median, the 4050th of 8100 pixels. Only
+        // the 2700 pixels of the green cluster have less red than the blue one, so the cut falls
+        // inside the blue cluster and splits it in two, which leaves 4 swatches
+        assertEquals(4, adaptive.getSwatches().size());
+        for (int center : centers) {
+            boolean found = false;
+            for (Palette.Swatch swatch : adaptive.getSwatches()) {
+                found |= Math.abs(ColorUtils.red(swatch.getRgb()) - ColorUtils.red(center)) <= 8
+                        && Math.abs(ColorUtils.green(swatch.getRgb()) - ColorUtils.green(center)) <= 8
+                        && Math.abs(ColorUtils.blue(swatch.getRgb()) - ColorUtils.blue(center)) <= 8;
+            }
+            assertTrue(found);
+        }
+    }
+
+    @Test
+    public void testMinimumBoxSizeZeroChangesNothing() {
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            assertEquals(Palette.from(sample).generate().getSwatches(),
+                         Palette.from(sample).setQuantizer(Quantizer.colorCut(0))
+                                 .generate().getSwatches());
+        }
+    }
+
     private void testMaxColorCount(int colorCount) {
         try (Bitmap sample = TestUtils.loadSampleBitmap()) {
             Palette newPalette = Palette.from(sample)
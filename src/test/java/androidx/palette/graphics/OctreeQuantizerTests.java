@@ -0,0 +1,109 @@
+package androidx.palette.graphics;
+
+import static androidx.core.graphics.ColorUtils.argbToRgba;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import androidx.core.graphics.ColorUtils;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.Random;
+
+@RunWith(GdxTestRunner.class)
+public class OctreeQuantizerTests {
+
+    @Test
+    public void testRowsAreAveraged() {
+        final OctreeQuantizer tree = new OctreeQuantizer();
+        final int[] row = new int[10];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = i < 4 ? ColorUtils.rgb(200, 0, 0) : ColorUtils.rgb(210, 0, 0);
+        }
+        tree.addPixels(row);
+        tree.addPixels(new int[] {Color.BLUE, Color.BLUE});
+
+        final List<Palette.Swatch> exact = tree.getSwatches(16, null);
+        assertEquals(3, exact.size());
+
+        final List<Palette.Swatch> swatches = tree.getSwatches(2, null);
+        assertEquals(2, swatches.size());
+        final Palette.Swatch red = swatches.get(0).getPopulation() == 10 ? swatches.get(0) : swatches.get(1);
+        final Palette.Swatch blue = red == swatches.get(0) ? swatches.get(1) : swatches.get(0);
+        // (4 * 200 + 6 * 210) / 10
+        assertEquals(ColorUtils.rgb(206, 0, 0), red.getRgb());
+        assertEquals(Color.BLUE, blue.getRgb());
+        assertEquals(2, blue.getPopulation());
+
+        // Getting swatches leaves the tree untouched
+        assertEquals(3, tree.getSwatches(16, null).size());
+    }
+
+    @Test
+    public void testNodeBudget() {
+        final OctreeQuantizer tree = new OctreeQuantizer(64);
+        final Random random = new Random(64);
+        final int[] row = new int[256];
+        long total = 0;
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < row.length; x++) {
+                row[x] = random.nextInt();
+            }
+            tree.addPixels(row);
+            total += row.length;
+            assertTrue(tree.getNodeCount() <= 64);
+        }
+
+        // Every pixel is still accounted for after folding
+        long population = 0;
+        for (Palette.Swatch swatch : tree.getSwatches(64, null)) {
+            population += swatch.getPopulation();
+        }
+        assertEquals(total, population);
+    }
+
+    @Test
+    public void testClear() {
+        final OctreeQuantizer tree = new OctreeQuantizer();
+        tree.addPixels(new int[] {Color.RED, Color.GREEN});
+        tree.clear();
+        tree.addPixels(new int[] {Color.BLUE});
+        final List<Palette.Swatch> swatches = tree.getSwatches(16, null);
+        assertEquals(1, swatches.size());
+        assertEquals(Color.BLUE, swatches.get(0).getRgb());
+    }
+
+    @Test
+    public void testAsQuantizer() {
+        try (Bitmap bitmap = Bitmap.of(new Pixmap(100, 100, Pixmap.Format.RGBA8888) {{
+            setColor(argbToRgba(Color.RED));
+            fill();
+            setColor(argbToRgba(Color.GREEN));
+            fillRectangle(0, 0, 100, 30);
+        }}, true)) {
+            final Palette palette = Palette.from(bitmap).setQuantizer(Quantizer.octree()).generate();
+            assertEquals(2, palette.getSwatches().size());
+            TestUtils.assertCloseColors(Color.RED, palette.getDominantSwatch().getRgb());
+        }
+
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            final Palette palette = Palette.from(sample)
+                    .maximumColorCount(16)
+                    .setQuantizer(Quantizer.octree(256))
+                    .generate();
+            assertTrue(palette.getSwatches().size() <= 16);
+            assertTrue(palette.getSwatches().size() > 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBudgetTooSmall() {
+        new OctreeQuantizer(8);
+    }
+}
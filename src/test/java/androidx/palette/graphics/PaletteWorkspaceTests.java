@@ -0,0 +1,56 @@
+package androidx.palette.graphics;
+
+import static androidx.core.graphics.ColorUtils.argbToRgba;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(GdxTestRunner.class)
+public class PaletteWorkspaceTests {
+
+    @Test
+    public void testReusedWorkspaceMatchesFreshBuffers() {
+        final PaletteWorkspace workspace = new PaletteWorkspace();
+        try (Bitmap sample = TestUtils.loadSampleBitmap();
+             Bitmap blue = Bitmap.of(new Pixmap(300, 300, Pixmap.Format.RGBA8888) {{
+                 setColor(argbToRgba(Color.BLUE));
+                 fill();
+             }}, true)) {
+            // Alternate between images, so any leftovers from the previous generate would show
+            for (int i = 0; i < 2; i++) {
+                for (Bitmap bitmap : new Bitmap[] {sample, blue}) {
+                    for (Palette.ScaleMode mode : Palette.ScaleMode.values()) {
+                        assertEquals(Palette.from(bitmap).setScaleMode(mode).generate().getSwatches(),
+                                     Palette.from(bitmap)
+                                             .setScaleMode(mode)
+                                             .setWorkspace(workspace)
+                                             .generate()
+                                             .getSwatches());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testForCurrentThread() throws InterruptedException {
+        final PaletteWorkspace workspace = PaletteWorkspace.forCurrentThread();
+        assertSame(workspace, PaletteWorkspace.forCurrentThread());
+
+        final AtomicReference<PaletteWorkspace> other = new AtomicReference<>();
+        final Thread thread = new Thread(() -> other.set(PaletteWorkspace.forCurrentThread()));
+        thread.start();
+        thread.join();
+        assertNotSame(workspace, other.get());
+    }
+}
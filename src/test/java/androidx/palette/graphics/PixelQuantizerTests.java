@@ -0,0 +1,58 @@
+package androidx.palette.graphics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(GdxTestRunner.class)
+public class PixelQuantizerTests {
+
+    @Test
+    public void testVectorizedWhenExpected() throws ReflectiveOperationException {
+        // Set by the build for the test run against the Java 17 classes with the Vector API, so
+        // a broken module check can't quietly fall back to the scalar loop. Vectors of a single
+        // lane aren't worth using, so CPUs without SIMD registers still take the scalar loop
+        final boolean expected = Boolean.getBoolean("palette.expectVectorized")
+                && getPreferredLaneCount() > 1;
+        assertEquals(expected, PixelQuantizer.isVectorized());
+    }
+
+    @Test
+    public void testCountsMatchScalarLoop() {
+        final int[] pixels = TestUtils.createNoise(1000);
+        for (int wordWidth : new int[] {4, 5}) {
+            // Lengths around every likely lane count, from offsets which aren't aligned to one
+            for (int offset = 0; offset < 6; offset++) {
+                for (int length = 0; length <= 70; length++) {
+                    assertCountsMatch(pixels, offset, length, wordWidth);
+                }
+            }
+            assertCountsMatch(pixels, 7, pixels.length - 7, wordWidth);
+        }
+    }
+
+    private static void assertCountsMatch(int[] pixels, int offset, int length, int wordWidth) {
+        final long[] expected = new long[1 << (3 * wordWidth)];
+        for (int i = offset; i < offset + length; i++) {
+            expected[ColorCutQuantizer.quantizeFromRgb888(pixels[i], wordWidth)]++;
+        }
+        final long[] counts = new long[expected.length];
+        PixelQuantizer.countPixels(pixels, offset, length, wordWidth, counts,
+                                   new int[PixelQuantizer.getScratchSize()]);
+        assertArrayEquals(expected, counts);
+    }
+
+    /**
+     * @return the number of ints in the Vector API's preferred vectors. Looked up reflectively,
+     * as the tests are compiled for Java 8, so this throws if the module is missing.
+     */
+    private static int getPreferredLaneCount() throws ReflectiveOperationException {
+        final Object species = Class.forName("jdk.incubator.vector.IntVector")
+                .getField("SPECIES_PREFERRED").get(null);
+        return (Integer) Class.forName("jdk.incubator.vector.VectorSpecies")
+                .getMethod("length").invoke(species);
+    }
+}
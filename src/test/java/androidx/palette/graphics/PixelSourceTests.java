@@ -0,0 +1,186 @@
+package androidx.palette.graphics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import android.graphics.Bitmap;
+
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@RunWith(GdxTestRunner.class)
+public class PixelSourceTests {
+    private static final int WIDTH = 19;
+    private static final int HEIGHT = 13;
+
+    @Test
+    public void testArgbArrayMatchesBitmap() {
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            final int width = sample.getWidth();
+            final int height = sample.getHeight();
+            final int[] pixels = new int[width * height];
+            sample.getPixels(pixels, 0, width, 0, 0, width, height);
+
+            final PixelSource array = PixelSource.ofArgb(pixels, width, height);
+
+            // Without scaling, and with a scale mode which both kinds of source support
+            assertEquals(Palette.from(sample).resizeBitmapArea(0).generate().getSwatches(),
+                         Palette.from(array).resizeBitmapArea(0).generate().getSwatches());
+            assertEquals(Palette.from(sample).setScaleMode(Palette.ScaleMode.SUBSAMPLE)
+                                 .generate().getSwatches(),
+                         Palette.from(array).setScaleMode(Palette.ScaleMode.SUBSAMPLE)
+                                 .generate().getSwatches());
+        }
+    }
+
+    @Test
+    public void testBitmapSourceScalesBitmap() {
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            // A wrapped bitmap is still scaled down natively by the default scale mode
+            assertEquals(Palette.from(sample).generate().getSwatches(),
+                         Palette.from(PixelSource.of(sample)).generate().getSwatches());
+        }
+    }
+
+    @Test
+    public void testHeapBufferLayouts() {
+        testBufferLayouts(false);
+    }
+
+    @Test
+    public void testDirectBufferLayouts() {
+        testBufferLayouts(true);
+    }
+
+    @Test
+    public void testBufferRowStride() {
+        final int[] expected = TestUtils.createNoise(WIDTH * HEIGHT);
+        final int rowStride = WIDTH * 4 + 6;
+        final ByteBuffer buffer = ByteBuffer.allocate(rowStride * HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                buffer.putInt(y * rowStride + x * 4, expected[y * WIDTH + x]);
+            }
+        }
+
+        final PixelSource source = PixelSource.of(buffer, WIDTH, HEIGHT, rowStride,
+                                                  PixelSource.Layout.ARGB8888);
+        assertArrayEquals(expected, readAll(source));
+    }
+
+    @Test
+    public void testMappedFileMatchesArray() throws IOException {
+        final int[] expected = TestUtils.createNoise(WIDTH * HEIGHT);
+        final Path file = Files.createTempFile("palette", ".raw");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                MappedPixelSource.writeHeader(out, WIDTH, HEIGHT, PixelSource.Layout.RGBA8888);
+                for (int argb : expected) {
+                    out.write(argb >> 16);
+                    out.write(argb >> 8);
+                    out.write(argb);
+                    out.write(argb >>> 24);
+                }
+            }
+
+            final MappedPixelSource source = MappedPixelSource.open(file);
+            assertEquals(WIDTH, source.getWidth());
+            assertEquals(HEIGHT, source.getHeight());
+            assertArrayEquals(expected, readAll(source));
+            assertEquals(Palette.from(PixelSource.ofArgb(expected, WIDTH, HEIGHT)).generate().getSwatches(),
+                         Palette.from(source).generate().getSwatches());
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testMappedFileTruncated() throws IOException {
+        final Path file = Files.createTempFile("palette", ".raw");
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                MappedPixelSource.writeHeader(out, WIDTH, HEIGHT, PixelSource.Layout.RGB888);
+                out.write(new byte[WIDTH * 3]);
+            }
+            MappedPixelSource.open(file);
+        }
+        finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testMappedHeaderRejectsNullLayout() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            MappedPixelSource.writeHeader(out, WIDTH, HEIGHT, null);
+            fail("A null layout must be rejected");
+        }
+        catch (IllegalArgumentException expected) {
+            // Nothing is written, so no half header is left behind
+            assertEquals(0, out.size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBufferTooSmall() {
+        PixelSource.of(ByteBuffer.allocate(10), WIDTH, HEIGHT, PixelSource.Layout.RGBA8888);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadOutOfBounds() {
+        final PixelSource source = PixelSource.ofArgb(new int[WIDTH * HEIGHT], WIDTH, HEIGHT);
+        source.getPixels(new int[WIDTH * HEIGHT], 0, WIDTH, 1, 0, WIDTH, HEIGHT);
+    }
+
+    private static void testBufferLayouts(boolean direct) {
+        final int[] argb = TestUtils.createNoise(WIDTH * HEIGHT);
+        for (PixelSource.Layout layout : PixelSource.Layout.values()) {
+            final ByteBuffer buffer = direct
+                                      ? ByteBuffer.allocateDirect(argb.length * layout.bytesPerPixel + 3)
+                                      : ByteBuffer.allocate(argb.length * layout.bytesPerPixel + 3);
+            // Start at a non-zero position to check that it is respected
+            buffer.position(3);
+            final int[] expected = new int[argb.length];
+            for (int i = 0; i < argb.length; i++) {
+                final int a = argb[i] >>> 24, r = (argb[i] >> 16) & 0xFF;
+                final int g = (argb[i] >> 8) & 0xFF, b = argb[i] & 0xFF;
+                switch (layout) {
+                    case RGBA8888: put(buffer, r, g, b, a); break;
+                    case ARGB8888: put(buffer, a, r, g, b); break;
+                    case BGRA8888: put(buffer, b, g, r, a); break;
+                    case RGB888: put(buffer, r, g, b); break;
+                }
+                expected[i] = layout == PixelSource.Layout.RGB888 ? argb[i] | 0xFF000000 : argb[i];
+            }
+            buffer.position(3);
+
+            final PixelSource source = PixelSource.of(buffer, WIDTH, HEIGHT, layout);
+            assertArrayEquals(layout.name(), expected, readAll(source));
+            assertEquals(3, buffer.position());
+        }
+    }
+
+    private static void put(ByteBuffer buffer, int... bytes) {
+        for (int b : bytes) {
+            buffer.put((byte) b);
+        }
+    }
+
+    private static int[] readAll(PixelSource source) {
+        final int[] pixels = new int[source.getWidth() * source.getHeight()];
+        source.getPixels(pixels, 0, source.getWidth(), 0, 0, source.getWidth(), source.getHeight());
+        return pixels;
+    }
+}
@@ -0,0 +1,169 @@
+package androidx.palette.graphics;
+
+import static org.junit.Assert.assertEquals;
+
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+@RunWith(GdxTestRunner.class)
+public class PngTests {
+    private static final int WIDTH = 61;
+    private static final int HEIGHT = 47;
+
+    @Test
+    public void testRgb() throws IOException {
+        final BufferedImage image = createImage(BufferedImage.TYPE_INT_RGB);
+        assertSameSwatches(image, getArgb(image), encode(image, false));
+    }
+
+    @Test
+    public void testRgba() throws IOException {
+        final BufferedImage image = createImage(BufferedImage.TYPE_INT_ARGB);
+        assertSameSwatches(image, getArgb(image), encode(image, false));
+    }
+
+    @Test
+    public void testPalette() throws IOException {
+        final BufferedImage image = createImage(BufferedImage.TYPE_BYTE_INDEXED);
+        assertSameSwatches(image, getArgb(image), encode(image, false));
+    }
+
+    @Test
+    public void testOneBitPalette() throws IOException {
+        final BufferedImage image = createImage(BufferedImage.TYPE_BYTE_BINARY);
+        assertSameSwatches(image, getArgb(image), encode(image, false));
+    }
+
+    @Test
+    public void testGray() throws IOException {
+        final BufferedImage image = createImage(BufferedImage.TYPE_BYTE_GRAY);
+        assertSameSwatches(image, getGray(image, 0), encode(image, false));
+    }
+
+    @Test
+    public void testSixteenBitGray() throws IOException {
+        final BufferedImage image = createImage(BufferedImage.TYPE_USHORT_GRAY);
+        assertSameSwatches(image, getGray(image, 8), encode(image, false));
+    }
+
+    @Test
+    public void testInterlaced() throws IOException {
+        final BufferedImage image = createImage(BufferedImage.TYPE_INT_RGB);
+        assertSameSwatches(image, getArgb(image), encode(image, true));
+    }
+
+    @Test
+    public void testRowAndColumnSteps() throws IOException {
+        final BufferedImage image = createImage(BufferedImage.TYPE_INT_RGB);
+        final int[] argb = getArgb(image);
+        final int sampledWidth = (WIDTH + 2) / 3, sampledHeight = (HEIGHT + 1) / 2;
+        final int[] sampled = new int[sampledWidth * sampledHeight];
+        for (int y = 0; y < sampledHeight; y++) {
+            for (int x = 0; x < sampledWidth; x++) {
+                sampled[y * sampledWidth + x] = argb[y * 2 * WIDTH + x * 3];
+            }
+        }
+        final List<Palette.Swatch> expected = Palette.from(PixelSource.ofArgb(sampled, sampledWidth, sampledHeight))
+                .resizeBitmapArea(0)
+                .generate()
+                .getSwatches();
+
+        // Interlacing spreads the rows and columns over several passes, which must agree
+        for (boolean interlaced : new boolean[] {false, true}) {
+            final byte[] png = encode(image, interlaced);
+            assertEquals(expected,
+                         Palette.fromPng(new ByteArrayInputStream(png), 2, 3).generate().getSwatches());
+        }
+    }
+
+    @Test
+    public void testGenerateTwice() throws IOException {
+        final Palette.Builder builder = Palette.fromPng(
+                new ByteArrayInputStream(encode(createImage(BufferedImage.TYPE_INT_RGB), false)));
+        assertEquals(builder.generate().getSwatches(), builder.generate().getSwatches());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotPng() throws IOException {
+        Palette.fromPng(new ByteArrayInputStream(new byte[100]));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        final byte[] png = encode(createImage(BufferedImage.TYPE_INT_RGB), false);
+        Palette.fromPng(new ByteArrayInputStream(Arrays.copyOf(png, png.length / 2)));
+    }
+
+    private static void assertSameSwatches(BufferedImage image, int[] expected, byte[] png)
+            throws IOException {
+        assertEquals(Palette.from(PixelSource.ofArgb(expected, image.getWidth(), image.getHeight()))
+                             .resizeBitmapArea(0)
+                             .generate()
+                             .getSwatches(),
+                     Palette.fromPng(new ByteArrayInputStream(png)).generate().getSwatches());
+    }
+
+    private static BufferedImage createImage(int type) {
+        // A gradient, so every filter type is worth using, with some noise on top
+        final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        final Random random = new Random(type);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                final int noise = random.nextInt(32);
+                image.setRGB(x, y, random.nextInt(4) << 30
+                        | (x * 255 / WIDTH) << 16 | (y * 255 / HEIGHT) << 8 | noise * 4);
+            }
+        }
+        return image;
+    }
+
+    private static int[] getArgb(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    /**
+     * Gray images are stored in a linear color space, so {@link BufferedImage#getRGB} would
+     * convert them. The PNG holds the raw samples.
+     */
+    private static int[] getGray(BufferedImage image, int shift) {
+        final Raster raster = image.getRaster();
+        final int[] argb = new int[image.getWidth() * image.getHeight()];
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                argb[y * image.getWidth() + x] = 0xFF000000 | (raster.getSample(x, y, 0) >> shift) * 0x010101;
+            }
+        }
+        return argb;
+    }
+
+    private static byte[] encode(BufferedImage image, boolean interlaced) throws IOException {
+        final ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            final ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setProgressiveMode(interlaced ? ImageWriteParam.MODE_DEFAULT
+                                                : ImageWriteParam.MODE_DISABLED);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+        finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
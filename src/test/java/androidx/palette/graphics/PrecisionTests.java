@@ -0,0 +1,102 @@
+package androidx.palette.graphics;
+
+import static androidx.core.graphics.ColorUtils.argbToRgba;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import androidx.core.graphics.ColorUtils;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+@RunWith(GdxTestRunner.class)
+public class PrecisionTests {
+
+    @Test
+    public void testSparseCountsMatchPixels() {
+        final Random random = new Random(6);
+        final int[] pixels = new int[50000];
+        for (int i = 0; i < pixels.length; i++) {
+            // Enough distinct colors for the sparse table to grow a few times
+            pixels[i] = random.nextInt(1 << 15) * 0x1F3;
+        }
+        final ColorHistogram histogram = new ColorHistogram(6);
+        histogram.addPixels(pixels, 0, pixels.length);
+
+        final long[] expected = new long[histogram.getBucketCount()];
+        for (int pixel : pixels) {
+            expected[ColorCutQuantizer.quantizeFromRgb888(pixel, 6)]++;
+        }
+
+        final int[] buckets = new int[histogram.getPopulatedBucketCount()];
+        final int populated = histogram.getPopulatedBuckets(buckets);
+        int expectedPopulated = 0;
+        for (int bucket = 0; bucket < expected.length; bucket++) {
+            assertEquals(expected[bucket], histogram.getCount(bucket));
+            if (expected[bucket] > 0) {
+                assertEquals(bucket, buckets[expectedPopulated++]);
+            }
+        }
+        assertEquals(expectedPopulated, populated);
+
+        histogram.clear();
+        assertEquals(0, histogram.getPopulatedBucketCount());
+    }
+
+    @Test
+    public void testSixBitsKeepsCloseShadesApart() {
+        // 5 bits puts both shades into the same bucket, 6 bits doesn't
+        try (Bitmap bitmap = Bitmap.of(new Pixmap(100, 100, Pixmap.Format.RGBA8888) {{
+            setColor(argbToRgba(ColorUtils.rgb(200, 40, 40)));
+            fill();
+            setColor(argbToRgba(ColorUtils.rgb(204, 40, 40)));
+            fillRectangle(0, 0, 100, 50);
+        }}, true)) {
+            assertEquals(1, Palette.from(bitmap).generate().getSwatches().size());
+            for (Quantizer quantizer : new Quantizer[] {Quantizer.colorCut(), Quantizer.wu()}) {
+                assertEquals(2, Palette.from(bitmap)
+                        .setPrecision(6)
+                        .setQuantizer(quantizer)
+                        .generate()
+                        .getSwatches()
+                        .size());
+            }
+        }
+    }
+
+    @Test
+    public void testMaxColorCountAtEveryPrecision() {
+        final PaletteWorkspace workspace = new PaletteWorkspace();
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            for (int precision = ColorHistogram.MIN_PRECISION;
+                 precision <= ColorHistogram.MAX_PRECISION; precision++) {
+                for (Quantizer quantizer : new Quantizer[] {Quantizer.colorCut(), Quantizer.wu()}) {
+                    final Palette palette = Palette.from(sample)
+                            .setPrecision(precision)
+                            .setQuantizer(quantizer)
+                            .generate();
+                    assertTrue(palette.getSwatches().size() <= 16);
+                    assertTrue(palette.getSwatches().size() > 0);
+                    assertEquals(palette.getSwatches(), Palette.from(sample)
+                            .setPrecision(precision)
+                            .setQuantizer(quantizer)
+                            .setWorkspace(workspace)
+                            .generate()
+                            .getSwatches());
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedPrecision() {
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            Palette.from(sample).setPrecision(8);
+        }
+    }
+}
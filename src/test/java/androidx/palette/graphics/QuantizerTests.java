@@ -0,0 +1,91 @@
+package androidx.palette.graphics;
+
+import static androidx.core.graphics.ColorUtils.argbToRgba;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(GdxTestRunner.class)
+public class QuantizerTests {
+
+    @Test
+    public void testCustomQuantizer() {
+        // Only keeps the most populated color
+        final Quantizer mostCommon = (histogram, maxColors, filters) -> {
+            int best = 0;
+            for (int bucket = 1; bucket < histogram.getBucketCount(); bucket++) {
+                if (histogram.getCount(bucket) > histogram.getCount(best)) {
+                    best = bucket;
+                }
+            }
+            return Collections.singletonList(new Palette.Swatch(
+                    histogram.getRgb(best), (int) histogram.getCount(best)));
+        };
+
+        try (Bitmap bitmap = Bitmap.of(new Pixmap(100, 100, Pixmap.Format.RGBA8888) {{
+            setColor(argbToRgba(Color.RED));
+            fill();
+            setColor(argbToRgba(Color.GREEN));
+            fillRectangle(0, 0, 100, 30);
+        }}, true)) {
+            final Palette palette = Palette.from(bitmap).setQuantizer(mostCommon).generate();
+            assertEquals(1, palette.getSwatches().size());
+            TestUtils.assertCloseColors(Color.RED, palette.getSwatches().get(0).getRgb());
+            assertEquals(100 * 70, palette.getSwatches().get(0).getPopulation());
+        }
+    }
+
+    @Test
+    public void testColorCutIsDefault() {
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            assertEquals(Palette.from(sample).generate().getSwatches(),
+                         Palette.from(sample).setQuantizer(Quantizer.colorCut()).generate().getSwatches());
+        }
+    }
+
+    @Test
+    public void testWrappedQuantizerGetsWorkspace() {
+        final PaletteWorkspace workspace = new PaletteWorkspace();
+        final PaletteWorkspace[] seen = new PaletteWorkspace[1];
+        final Quantizer adaptive = Quantizer.colorCut(32);
+        // Passes every option on to the color cut quantizer, as a wrapper should
+        final Quantizer wrapper = new Quantizer() {
+            @Override
+            public List<Palette.Swatch> quantize(ColorHistogram histogram, int maxColors,
+                    Palette.Filter[] filters) {
+                return quantize(histogram, maxColors, filters, null);
+            }
+
+            @Override
+            public List<Palette.Swatch> quantize(ColorHistogram histogram, int maxColors,
+                    Palette.Filter[] filters, PaletteWorkspace workspace) {
+                seen[0] = workspace;
+                return adaptive.quantize(histogram, maxColors, filters, workspace);
+            }
+        };
+
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            assertEquals(Palette.from(sample).setQuantizer(adaptive).generate().getSwatches(),
+                         Palette.from(sample).setQuantizer(wrapper).setWorkspace(workspace)
+                                 .generate().getSwatches());
+            assertSame(workspace, seen[0]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullQuantizer() {
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            Palette.from(sample).setQuantizer(null);
+        }
+    }
+}
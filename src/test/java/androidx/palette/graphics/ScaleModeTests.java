@@ -0,0 +1,148 @@
+package androidx.palette.graphics;
+
+import static androidx.core.graphics.ColorUtils.argbToRgba;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import androidx.core.graphics.ColorUtils;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(GdxTestRunner.class)
+public class ScaleModeTests {
+
+    @Test
+    public void testSubsampleBlueBitmapReturnsBlueSwatch() {
+        testBlueBitmapReturnsBlueSwatch(Palette.ScaleMode.SUBSAMPLE);
+    }
+
+    @Test
+    public void testSubsampleDominantSwatch() {
+        testDominantSwatch(Palette.ScaleMode.SUBSAMPLE);
+    }
+
+    @Test
+    public void testSubsampleSourceBitmapNotRecycled() {
+        testSourceBitmapNotRecycled(Palette.ScaleMode.SUBSAMPLE);
+    }
+
+    @Test
+    public void testSubsampleMaxColorCount() {
+        testMaxColorCount(Palette.ScaleMode.SUBSAMPLE);
+    }
+
+    @Test
+    public void testAreaAverageBlueBitmapReturnsBlueSwatch() {
+        testBlueBitmapReturnsBlueSwatch(Palette.ScaleMode.AREA_AVERAGE);
+    }
+
+    @Test
+    public void testAreaAverageDominantSwatch() {
+        testDominantSwatch(Palette.ScaleMode.AREA_AVERAGE);
+    }
+
+    @Test
+    public void testAreaAverageSourceBitmapNotRecycled() {
+        testSourceBitmapNotRecycled(Palette.ScaleMode.AREA_AVERAGE);
+    }
+
+    @Test
+    public void testAreaAverageMaxColorCount() {
+        testMaxColorCount(Palette.ScaleMode.AREA_AVERAGE);
+    }
+
+    @Test
+    public void testAreaAverageBlendsFineDetail() {
+        // A one pixel checkerboard of red and blue averages out to purple when scaled down
+        try (Bitmap bitmap = Bitmap.of(
+                new Pixmap(200, 200, Pixmap.Format.RGBA8888) {{
+                    setColor(argbToRgba(Color.RED));
+                    fill();
+                    setColor(argbToRgba(Color.BLUE));
+                    for (int y = 0; y < 200; y++) {
+                        for (int x = y % 2; x < 200; x += 2) {
+                            drawPixel(x, y);
+                        }
+                    }
+                }}
+        )) {
+            final Palette palette = Palette.from(bitmap)
+                    .resizeBitmapArea(50 * 50)
+                    .setScaleMode(Palette.ScaleMode.AREA_AVERAGE)
+                    .generate();
+
+            assertEquals(1, palette.getSwatches().size());
+            TestUtils.assertCloseColors(ColorUtils.rgb(128, 0, 128), palette.getSwatches().get(0).getRgb());
+        }
+    }
+
+    private static void testBlueBitmapReturnsBlueSwatch(Palette.ScaleMode mode) {
+        try (Bitmap bitmap = Bitmap.of(
+                new Pixmap(300, 300, Pixmap.Format.RGBA8888) {{
+                    setColor(argbToRgba(Color.BLUE));
+                    fill();
+                }}
+        )) {
+            final Palette palette = Palette.from(bitmap)
+                    .setScaleMode(mode)
+                    .generate();
+
+            assertEquals(1, palette.getSwatches().size());
+
+            final Palette.Swatch swatch = palette.getSwatches().get(0);
+            TestUtils.assertCloseColors(Color.BLUE, swatch.getRgb());
+        }
+    }
+
+    private static void testDominantSwatch(Palette.ScaleMode mode) {
+        try (Bitmap bitmap = Bitmap.of(
+                new Pixmap(400, 400, Pixmap.Format.RGBA8888) {{
+                    setColor(argbToRgba(Color.BLUE));
+                    fill();
+
+                    setColor(argbToRgba(Color.GREEN));
+                    fillRectangle(0, 0, 400, 40);
+
+                    setColor(argbToRgba(Color.RED));
+                    fillRectangle(0, 40, 400, 80);
+                }}
+        )) {
+            // Force a large downscale so that the scaling strategy is actually exercised
+            final Palette palette = Palette.from(bitmap)
+                    .resizeBitmapArea(50 * 50)
+                    .setScaleMode(mode)
+                    .generate();
+
+            assertEquals(3, palette.getSwatches().size());
+
+            final Palette.Swatch swatch = palette.getDominantSwatch();
+            assertNotNull(swatch);
+            TestUtils.assertCloseColors(Color.BLUE, swatch.getRgb());
+        }
+    }
+
+    private static void testSourceBitmapNotRecycled(Palette.ScaleMode mode) {
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            Palette.from(sample).setScaleMode(mode).generate();
+            assertFalse(sample.isDisposed());
+        }
+    }
+
+    private static void testMaxColorCount(Palette.ScaleMode mode) {
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            Palette palette = Palette.from(sample)
+                    .setScaleMode(mode)
+                    .maximumColorCount(12)
+                    .generate();
+            assertTrue(palette.getSwatches().size() <= 12);
+            assertFalse(palette.getSwatches().isEmpty());
+        }
+    }
+}
@@ -19,13 +19,16 @@ package androidx.palette.graphics;
 import static androidx.core.graphics.ColorUtils.HSLToColor;
 import static androidx.core.graphics.ColorUtils.calculateContrast;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import android.graphics.Bitmap;
 import android.graphics.Color;
+import androidx.core.graphics.ColorUtils;
 
 import kww.test.GdxTestRunner;
 import org.junit.Test;
@@ -69,6 +72,20 @@ public class SwatchTests {
         }
     }
 
+    @Test
+    public void testHslSurvivesChanges() {
+        final Palette.Swatch swatch = new Palette.Swatch(ColorUtils.rgb(40, 120, 200), 50);
+        final float[] expected = new float[3];
+        ColorUtils.colorToHSL(swatch.getRgb(), expected);
+
+        final float[] hsl = swatch.getHsl();
+        assertArrayEquals(expected, hsl, 0f);
+        // A caller scribbling over the array doesn't change what the swatch returns next
+        hsl[0] = hsl[1] = hsl[2] = -1f;
+        assertSame(hsl, swatch.getHsl());
+        assertArrayEquals(expected, swatch.getHsl(), 0f);
+    }
+
     private void testSwatchTextColorContrasts(Palette.Swatch swatch) {
         final int bodyTextColor = swatch.getBodyTextColor();
         assertTrue(calculateContrast(bodyTextColor, swatch.getRgb()) >= MIN_CONTRAST_BODY_TEXT);
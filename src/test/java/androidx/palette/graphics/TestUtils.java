@@ -9,11 +9,25 @@ import static androidx.core.graphics.ColorUtils.green;
 import static androidx.core.graphics.ColorUtils.red;
 import static org.junit.Assert.assertEquals;
 
+import java.util.Random;
+
 class TestUtils {
     static Bitmap loadSampleBitmap() {
         return Bitmap.of(new Pixmap(Gdx.files.internal("photo.jpg")));
     }
 
+    /**
+     * @return {@code size} random ARGB pixels, the same for every call with the same size
+     */
+    static int[] createNoise(int size) {
+        final Random random = new Random(size);
+        final int[] pixels = new int[size];
+        for (int i = 0; i < size; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
     static void assertCloseColors(int expected, int actual) {
         assertEquals(red(expected), red(actual), 8);
         assertEquals(green(expected), green(actual), 8);
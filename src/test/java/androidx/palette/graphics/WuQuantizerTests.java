@@ -0,0 +1,100 @@
+package androidx.palette.graphics;
+
+import static androidx.core.graphics.ColorUtils.argbToRgba;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import androidx.core.graphics.ColorUtils;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import kww.test.GdxTestRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+@RunWith(GdxTestRunner.class)
+public class WuQuantizerTests {
+
+    @Test
+    public void testSingleColor() {
+        try (Bitmap bitmap = Bitmap.of(new Pixmap(100, 100, Pixmap.Format.RGBA8888) {{
+            setColor(argbToRgba(Color.BLUE));
+            fill();
+        }}, true)) {
+            final Palette palette = Palette.from(bitmap)
+                    .setQuantizer(Quantizer.wu())
+                    .generate();
+            assertEquals(1, palette.getSwatches().size());
+            TestUtils.assertCloseColors(Color.BLUE, palette.getSwatches().get(0).getRgb());
+        }
+    }
+
+    @Test
+    public void testDominantSwatch() {
+        try (Bitmap bitmap = Bitmap.of(new Pixmap(100, 100, Pixmap.Format.RGBA8888) {{
+            setColor(argbToRgba(Color.RED));
+            fill();
+            setColor(argbToRgba(Color.GREEN));
+            fillRectangle(0, 0, 100, 30);
+        }}, true)) {
+            final Palette palette = Palette.from(bitmap)
+                    .setQuantizer(Quantizer.wu())
+                    .generate();
+            final Palette.Swatch dominant = palette.getDominantSwatch();
+            assertNotNull(dominant);
+            TestUtils.assertCloseColors(Color.RED, dominant.getRgb());
+        }
+    }
+
+    @Test
+    public void testMaxColorCount() {
+        try (Bitmap sample = TestUtils.loadSampleBitmap()) {
+            for (int colorCount : new int[] {1, 15, 32, 256}) {
+                final Palette palette = Palette.from(sample)
+                        .maximumColorCount(colorCount)
+                        .setQuantizer(Quantizer.wu())
+                        .generate();
+                assertTrue(palette.getSwatches().size() <= colorCount);
+                assertTrue(palette.getSwatches().size() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testSplitsByVariance() {
+        // Two tight clusters far apart: the first cut separates them, and each mean is exact
+        final ColorHistogram histogram = new ColorHistogram();
+        histogram.mCounts[ColorCutQuantizer.quantizeFromRgb888(ColorUtils.rgb(200, 0, 0))] = 10;
+        histogram.mCounts[ColorCutQuantizer.quantizeFromRgb888(ColorUtils.rgb(208, 0, 0))] = 10;
+        histogram.mCounts[ColorCutQuantizer.quantizeFromRgb888(ColorUtils.rgb(0, 0, 200))] = 5;
+
+        final List<Palette.Swatch> swatches = new WuQuantizer(histogram, 2, null).getQuantizedColors();
+        assertEquals(2, swatches.size());
+        final Palette.Swatch red = swatches.get(0).getPopulation() == 20 ? swatches.get(0) : swatches.get(1);
+        final Palette.Swatch blue = red == swatches.get(0) ? swatches.get(1) : swatches.get(0);
+        // (25 + 26) / 2 = 25.5 rounds to 26, which is 208 as RGB888
+        assertEquals(ColorUtils.rgb(208, 0, 0), red.getRgb());
+        assertEquals(ColorUtils.rgb(0, 0, 200), blue.getRgb());
+        assertEquals(5, blue.getPopulation());
+    }
+
+    @Test
+    public void testFiltersApply() {
+        final ColorHistogram histogram = new ColorHistogram();
+        histogram.mCounts[ColorCutQuantizer.quantizeFromRgb888(Color.RED)] = 10;
+        histogram.mCounts[ColorCutQuantizer.quantizeFromRgb888(Color.GREEN)] = 10;
+        histogram.mCounts[ColorCutQuantizer.quantizeFromRgb888(Color.BLUE)] = 10;
+
+        final Palette.Filter noGreen = (rgb, hsl) -> ColorUtils.green(rgb) == 0;
+        final List<Palette.Swatch> swatches =
+                new WuQuantizer(histogram, 16, new Palette.Filter[] {noGreen}).getQuantizedColors();
+        assertEquals(2, swatches.size());
+        for (Palette.Swatch swatch : swatches) {
+            assertEquals(0, ColorUtils.green(swatch.getRgb()));
+        }
+    }
+}